@@ -0,0 +1,51 @@
+package org.example.Benchmark;
+import org.example.Model.BmpCodec;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+// Resolves a benchmark "source" parameter to a BMP on disk: either one of the bundled
+// P2_images files or a synthetic image of the given size in megapixels ("16MP").
+final class BenchmarkImages {
+    private static final String IMAGES_DIR = System.getProperty("images.dir", "../P2_images");
+
+    private BenchmarkImages() {
+    }
+
+    static File resolve(String source) throws IOException {
+        if (source.endsWith("MP")) {
+            return synthetic(Integer.parseInt(source.substring(0, source.length() - 2)));
+        }
+        File file = new File(IMAGES_DIR, source);
+        if (!file.isFile()) {
+            throw new IOException("Benchmark image not found: " + file.getAbsolutePath()
+                    + " (set -Dimages.dir to the P2_images directory)");
+        }
+        return file;
+    }
+
+    // Synthetic files are cached in the temp directory so that every fork does not rewrite them.
+    private static File synthetic(int megapixels) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"), "mini-photoshop-bench-" + megapixels + "MP.bmp");
+        if (file.isFile()) {
+            return file;
+        }
+        int width = (int) Math.sqrt(megapixels * 1_000_000.0 * 4 / 3);
+        int height = megapixels * 1_000_000 / width;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        SplittableRandom random = new SplittableRandom(megapixels);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() & 0xFFFFFF;
+        }
+
+        File partial = new File(file.getPath() + ".part");
+        BmpCodec.write(image, partial);
+        if (!partial.renameTo(file)) {
+            throw new IOException("Could not create " + file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.Benchmark;
+import org.example.Model.ImageModel;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class ImageModelBenchmark {
+    @Param({"image1.bmp", "image2.bmp", "image3.bmp", "1MP", "4MP", "16MP", "50MP", "100MP"})
+    public String source;
+
+    // 0 means one worker per available processor.
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private File sourceFile;
+    private File exportFile;
+    private ImageModel model;
+    private BufferedImage original;
+    private double megapixels;
+
+    // Reported next to the primary score; in throughput mode this is MP/s.
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Pixels {
+        public double megapixels;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megapixels = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        sourceFile = BenchmarkImages.resolve(source);
+        exportFile = File.createTempFile("mini-photoshop-bench-export", ".bmp");
+        model = new ImageModel();
+        model.setParallelism(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        // measure the operations themselves rather than derived-image cache hits
+        model.setCacheBudget(0);
+        model.readBmpFile(sourceFile);
+        original = model.getImage();
+        megapixels = original.getWidth() * (double) original.getHeight() / 1_000_000;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        exportFile.delete();
+    }
+
+    @Benchmark
+    public BufferedImage readBmpFile(Pixels pixels) throws IOException {
+        model.readBmpFile(sourceFile);
+        pixels.megapixels += megapixels;
+        return model.getImage();
+    }
+
+    @Benchmark
+    public BufferedImage grayscale(Pixels pixels) {
+        pixels.megapixels += megapixels;
+        return model.getGrayscaleImage();
+    }
+
+    @Benchmark
+    public BufferedImage orderedDither(Pixels pixels) {
+        pixels.megapixels += megapixels;
+        return model.getDitheredImage();
+    }
+
+    @Benchmark
+    public BufferedImage autoLevel(Pixels pixels) {
+        pixels.megapixels += megapixels;
+        return model.getAutoLevelImage();
+    }
+
+    @Benchmark
+    public BufferedImage crop(Pixels pixels) {
+        int width = original.getWidth();
+        int height = original.getHeight();
+        model.onCrop(width / 4, height / 4, width / 2, height / 2);
+        pixels.megapixels += megapixels / 4;
+        return model.getCropImage();
+    }
+
+    @Benchmark
+    public long saveImage(Pixels pixels) throws IOException {
+        model.saveImage(original, exportFile);
+        pixels.megapixels += megapixels;
+        return exportFile.length();
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.Benchmark;
+import org.example.Model.Kernels;
+import org.example.Model.RowKernel;
+import org.example.Model.SimdKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Scalar against SIMD row kernels on a 4000 x 1000 (exactly 4 MP) frame, single-threaded.
+// Scores are per megapixel, so throughput reads as MP/s.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 1000;
+    // Exact only while the frame is a whole number of megapixels.
+    private static final int MEGAPIXELS = WIDTH * HEIGHT / 1_000_000;
+    private static final int[][] BAYER_4 = {
+            {0, 8, 2, 10},
+            {12, 4, 14, 6},
+            {3, 11, 1, 9},
+            {15, 7, 13, 5},
+    };
+
+    @Param({"scalar", "vector"})
+    public String implementation;
+
+    private int[] source;
+    private int[] target;
+    private RowKernel grayscale;
+    private RowKernel orderedDither;
+
+    @Setup
+    public void setUp() {
+        source = new int[WIDTH * HEIGHT];
+        target = new int[WIDTH * HEIGHT];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = 0xFF000000 | random.nextInt(1 << 24);
+        }
+        if (implementation.equals("vector")) {
+            SimdKernels simd = Kernels.simd();
+            if (simd == null) {
+                throw new IllegalStateException("SIMD kernels unavailable; build with -Pbenchmark,vector");
+            }
+            grayscale = simd.grayscale();
+            orderedDither = simd.orderedDither(BAYER_4, 0, 0);
+        } else {
+            grayscale = Kernels.scalarGrayscale();
+            orderedDither = Kernels.scalarOrderedDither(0, 0);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGAPIXELS)
+    public int[] grayscale() {
+        return run(grayscale);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEGAPIXELS)
+    public int[] orderedDither() {
+        return run(orderedDither);
+    }
+
+    private int[] run(RowKernel kernel) {
+        for (int y = 0; y < HEIGHT; y++) {
+            kernel.apply(source, y * WIDTH, target, y * WIDTH, WIDTH, y);
+        }
+        return target;
+    }
+}
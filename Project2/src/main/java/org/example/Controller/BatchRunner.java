@@ -0,0 +1,198 @@
+package org.example.Controller;
+import org.example.Model.BmpCodec;
+import org.example.Model.ErrorDiffusion;
+import org.example.Model.ImageOperations;
+import org.example.Model.ImagePipeline;
+import org.example.Model.PixelEngine;
+import org.example.Model.Telemetry;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless mode: applies an ordered list of operations, fused into one ImagePipeline, to every
+// BMP in a directory.
+// Files are processed concurrently by a fixed worker pool; a semaphore measured in KiB of
+// estimated pixel memory keeps the number of images in flight bounded.
+public class BatchRunner {
+    private static final String USAGE = """
+            Usage: batch --input <dir> --output <dir> --ops <op,op,...> [--threads N] [--max-memory-mb M]
+              ops: crop:x:y:width:height, grayscale, dither[:4|8|16|floyd-steinberg|atkinson], autolevel[:low%:high%] (applied in order)""";
+
+    private final File inputDir;
+    private final File outputDir;
+    private final ImagePipeline pipeline;
+    private final int threads;
+    private final long maxMemoryKb;
+    private final PixelEngine engine = new PixelEngine(1, PixelEngine.DEFAULT_TILE_HEIGHT);
+
+    public BatchRunner(File inputDir, File outputDir, List<String> operations, int threads, long maxMemoryMb) {
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+        this.pipeline = parseOperations(ImagePipeline.identity(), operations);
+        this.threads = threads;
+        this.maxMemoryKb = maxMemoryMb * 1024;
+    }
+
+    public static int run(String[] args) {
+        try {
+            return fromArguments(args).run(System.out);
+        } catch (IllegalArgumentException e) {
+            return CommandLine.usageError(e, USAGE);
+        }
+    }
+
+    static BatchRunner fromArguments(String[] args) {
+        CommandLine commandLine = CommandLine.parse(args, "--input", "--output", "--ops", "--threads",
+                "--max-memory-mb");
+        File input = commandLine.getFile("--input");
+        File output = commandLine.getFile("--output");
+        String ops = commandLine.get("--ops", null);
+        int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+        long maxMemoryMb = commandLine.getLong("--max-memory-mb",
+                Runtime.getRuntime().maxMemory() / (1024 * 1024) * 3 / 4);
+        if (input == null || output == null || ops == null) {
+            throw new IllegalArgumentException("--input, --output and --ops are required.");
+        }
+        if (!input.isDirectory()) {
+            throw new IllegalArgumentException("Input is not a directory: " + input);
+        }
+        if (threads < 1 || maxMemoryMb < 1) {
+            throw new IllegalArgumentException("--threads and --max-memory-mb must be positive.");
+        }
+        return new BatchRunner(input, output, Arrays.asList(ops.split(",")), threads, maxMemoryMb);
+    }
+
+    // Appends operations in the --ops syntax to pipeline.
+    static ImagePipeline parseOperations(ImagePipeline pipeline, List<String> operations) {
+        for (String operation : operations) {
+            pipeline = parseOperation(pipeline, operation);
+        }
+        return pipeline;
+    }
+
+    private static ImagePipeline parseOperation(ImagePipeline pipeline, String operation) {
+        String[] parts = operation.trim().toLowerCase(Locale.ROOT).split(":");
+        return switch (parts[0]) {
+            case "crop" -> {
+                if (parts.length != 5) {
+                    throw new IllegalArgumentException("crop expects crop:x:y:width:height, got " + operation);
+                }
+                yield pipeline.crop(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                        Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+            }
+            case "grayscale" -> pipeline.grayscale();
+            case "dither" -> parseDither(pipeline, parts.length == 2 ? parts[1] : "4");
+            case "autolevel" -> parts.length == 3
+                    ? pipeline.autoLevel(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]))
+                    : pipeline.autoLevel();
+            default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+        };
+    }
+
+    private static ImagePipeline parseDither(ImagePipeline pipeline, String mode) {
+        return switch (mode) {
+            case "floyd-steinberg" -> pipeline.errorDiffusion(ErrorDiffusion.FLOYD_STEINBERG);
+            case "atkinson" -> pipeline.errorDiffusion(ErrorDiffusion.ATKINSON);
+            default -> pipeline.orderedDither(Integer.parseInt(mode));
+        };
+    }
+
+    public int run(PrintStream out) {
+        File[] files = inputDir.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".bmp"));
+        if (files == null || files.length == 0) {
+            out.println("No BMP files in " + inputDir);
+            return 0;
+        }
+        Arrays.sort(files);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            out.println("Cannot create output directory " + outputDir);
+            return 1;
+        }
+
+        int memoryKb = (int) Math.min(Integer.MAX_VALUE, maxMemoryKb);
+        Semaphore memory = new Semaphore(memoryKb);
+        long[] latencies = new long[files.length];
+        AtomicLong pixels = new AtomicLong();
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < files.length; i++) {
+                int index = i;
+                futures.add(workers.submit(() -> {
+                    File file = files[index];
+                    // a file larger than the whole budget still runs, just alone
+                    int permits = (int) Math.min(memoryKb, estimateKb(file));
+                    memory.acquireUninterruptibly(permits);
+                    long fileStart = System.nanoTime();
+                    try {
+                        pixels.addAndGet(processFile(file, new File(outputDir, file.getName())));
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        out.println("FAILED " + file.getName() + ": " + e.getMessage());
+                    } finally {
+                        latencies[index] = System.nanoTime() - fileStart;
+                        memory.release(permits);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            workers.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        out.printf(Locale.ROOT, "Processed %d files (%d failed) in %.2f s%n", files.length, failures.get(), seconds);
+        out.printf(Locale.ROOT, "Throughput: %.2f files/s, %.2f MP/s%n", files.length / seconds, pixels.get() / 1e6 / seconds);
+        out.printf(Locale.ROOT, "Latency per file: p50 %.1f ms, p99 %.1f ms%n",
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+        return failures.get() == 0 ? 0 : 1;
+    }
+
+    private long processFile(File input, File output) throws IOException {
+        // Only the pixels; the pipeline computes any histogram it needs on the batch's engine.
+        BufferedImage image = ImageOperations.decode(input);
+        long pixels = (long) image.getWidth() * image.getHeight();
+        try (Telemetry.Span span = Telemetry.begin("batch")) {
+            span.image(image);
+            BmpCodec.write(pipeline.execute(image, engine), output);
+            span.succeeded();
+        }
+        return pixels;
+    }
+
+    // Decoded source plus the fused pipeline's single result frame at 4 bytes per pixel; falls
+    // back to the file size when the header cannot be read.
+    private static long estimateKb(File file) {
+        long pixels;
+        try {
+            pixels = BmpCodec.readPixelCount(file);
+        } catch (IOException e) {
+            pixels = file.length();
+        }
+        return Math.max(1, pixels * 4 * 2 / 1024);
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.Controller;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Arguments of the headless commands: the command name followed by "--flag value" pairs, each
+// flag one of those the command accepts. Problems are reported as IllegalArgumentException,
+// which the commands answer with their usage text via usageError.
+final class CommandLine {
+    private final Map<String, String> values = new HashMap<>();
+
+    private CommandLine() {
+    }
+
+    static CommandLine parse(String[] args, String... flags) {
+        List<String> known = List.of(flags);
+        CommandLine commandLine = new CommandLine();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!known.contains(args[i])) {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            commandLine.values.put(args[i], args[i + 1]);
+        }
+        return commandLine;
+    }
+
+    // Prints the problem and the usage text; returns the exit status for bad arguments.
+    static int usageError(IllegalArgumentException e, String usage) {
+        System.err.println(e.getMessage());
+        System.err.println(usage);
+        return 2;
+    }
+
+    String get(String flag, String fallback) {
+        return values.getOrDefault(flag, fallback);
+    }
+
+    File getFile(String flag) {
+        String value = values.get(flag);
+        return value == null ? null : new File(value);
+    }
+
+    int getInt(String flag, int fallback) {
+        String value = values.get(flag);
+        try {
+            return value == null ? fallback : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + flag + ": " + value);
+        }
+    }
+
+    long getLong(String flag, long fallback) {
+        String value = values.get(flag);
+        try {
+            return value == null ? fallback : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + flag + ": " + value);
+        }
+    }
+}
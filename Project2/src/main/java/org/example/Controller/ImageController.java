@@ -1,100 +1,421 @@
 package org.example.Controller;
-import org.apache.commons.imaging.ImageWriteException;
+import org.example.Model.DitherMode;
 import org.example.Model.ImageModel;
+import org.example.Model.ImagePipeline;
+import org.example.Model.ProgressMonitor;
+import org.example.Model.ThumbnailCache;
 import org.example.View.CropDialog;
 import org.example.View.ImageView;
+import org.example.View.ThumbnailBrowser;
+import javax.swing.SwingUtilities;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 
 public class ImageController {
+    // below this size results are fast enough that a low-resolution preview would only flicker
+    private static final long PREVIEW_MIN_PIXELS = 4_000_000;
+    private static final long REFINE_INTERVAL_NANOS = 40_000_000;
+
     private final ImageModel model;
     private final ImageView view;
     private final CropDialog cropDialog;
+    private final ImageTaskExecutor tasks;
+    // Exports run beside the current task on their own virtual threads, so editing continues
+    // while a large file is written.
+    private final ExecutorService exports = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Export> activeExports = new ArrayList<>(); // EDT only
+    private final ThumbnailCache thumbnailCache = new ThumbnailCache();
+    private final ThumbnailBrowser browser;
+    // One decoding thread per core; the thumbnails of a large folder queue up in file order.
+    private final ExecutorService thumbnails = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), Thread.ofPlatform().daemon().name("thumbnail-", 0).factory());
+    private final List<Future<?>> thumbnailJobs = new ArrayList<>(); // EDT only
+
+    private record ImagePair(BufferedImage left, BufferedImage right) {
+    }
+
+    private record EditView(ImageModel.ImageState state, BufferedImage working, BufferedImage result) {
+    }
 
     public ImageController(ImageModel model, ImageView view) {
         this.model = model;
         this.view = view;
         this.cropDialog = new CropDialog(view);
+        this.tasks = new ImageTaskExecutor(view);
+        this.browser = new ThumbnailBrowser(view, thumbnailCache.getSize());
         cropDialog.addListener(model);
         view.setVisible(true);
     }
     public void init(){
         view.addOpenFileButtonListener(e -> handleFileOpen());
+        view.addBrowseButtonListener(e -> handleBrowse());
+        browser.addFolderListener(this::showFolder);
+        browser.addOpenListener(this::openFile);
         view.addExitButtonListener( e -> System.exit(0));
         view.addGrayscaleButtonListener(e -> handleGrayscaleOperation());
         view.addDitherButtonListener(e -> handleDitheringOperation());
+        view.setDitherModes(DitherMode.values(), model.getDitherMode(), model::setDitherMode);
         view.addAutoLevelButtonListener(e -> handleAutoLevelOperation());
+        view.addClippedAutoLevelButtonListener(e -> handleClippedAutoLevelOperation());
         view.addExportButtonListener(e -> handleExportOperation());
         view.addCropButtonListener(e -> handleCropOperation());
+        view.addStreamButtonListener(e -> handleLargeFileOperation());
+        view.addCancelButtonListener(e -> tasks.cancel());
+        view.addUndoButtonListener(e -> handleHistoryOperation("Undoing", model::undo));
+        view.addRedoButtonListener(e -> handleHistoryOperation("Redoing", model::redo));
     }
     private void handleFileOpen() {
         File selectedFile = view.showOpenFileDialog();
         if (selectedFile != null) {
-            try {
-                System.out.println("Selected file: " + selectedFile.getAbsolutePath());
-                model.readBmpFile(selectedFile);
-                BufferedImage image = model.getImage();
-                view.updateImage(image);
-            } catch (IOException e) {
-                view.showError("Error loading BMP file: " + e.getMessage());
-            }
+            openFile(selectedFile);
         }
     }
-    private void handleGrayscaleOperation() {
-        BufferedImage originalImage = model.getImage();
-        BufferedImage grayscaleImage = model.getGrayscaleImage();
-
-        if (originalImage != null && grayscaleImage != null) {
-            view.updateImageWithGrayScale(originalImage, grayscaleImage);
-        } else {
-            view.showError("No image loaded. Please open a BMP file first.");
+    private void openFile(File selectedFile) {
+        System.out.println("Selected file: " + selectedFile.getAbsolutePath());
+        tasks.submit("Loading " + selectedFile.getName(), monitor -> {
+                    model.readBmpFile(selectedFile);
+                    return model.getImage();
+                },
+                image -> {
+                    view.updateImage(image);
+                    updateHistoryActions();
+                },
+                e -> view.showError("Error loading BMP file: " + e.getMessage()));
+    }
+    private void handleBrowse() {
+        browser.setVisible(true);
+        if (browser.getFolder() == null) {
+            browser.chooseFolder();
         }
     }
-    private void handleDitheringOperation() {
-        BufferedImage grayscaleImage = model.getGrayscaleImage();
-        BufferedImage ditheredImage = model.getDitheredImage();
 
-        if (grayscaleImage != null && ditheredImage != null) {
-            view.updateImageWithDithering(grayscaleImage, ditheredImage);
-        } else {
-            view.showError("No image loaded. Please open a BMP file first.");
+    // Lists the folder's BMPs and decodes their thumbnails in parallel, dropping the queue of the
+    // folder shown before.
+    private void showFolder(File folder) {
+        for (Future<?> job : thumbnailJobs) {
+            job.cancel(false);
+        }
+        thumbnailJobs.clear();
+        File[] found = folder.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".bmp"));
+        List<File> files = new ArrayList<>(found == null ? List.of() : Arrays.asList(found));
+        files.sort(Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER));
+        browser.showFolder(folder, files);
+        for (File file : files) {
+            thumbnailJobs.add(thumbnails.submit(() -> {
+                try {
+                    BufferedImage thumbnail = thumbnailCache.thumbnail(file);
+                    SwingUtilities.invokeLater(() -> browser.setThumbnail(file, thumbnail));
+                } catch (Exception e) {
+                    SwingUtilities.invokeLater(() -> browser.setThumbnailFailed(file, e.getMessage()));
+                }
+            }));
         }
     }
+    private void handleGrayscaleOperation() {
+        Dimension previewSize = previewSize();
+        tasks.submit("Converting to grayscale", task -> {
+                    BufferedImage originalImage = model.getWorkingImage();
+                    ProgressMonitor monitor = task;
+                    if (wantsPreview(previewSize, originalImage)) {
+                        BufferedImage proxy = model.getProxyImage(ImageModel.ImageState.GRAYSCALE, null,
+                                previewSize.width, previewSize.height);
+                        task.publish(() -> view.showPreview(originalImage.getWidth(), originalImage.getHeight(),
+                                originalImage, proxy));
+                        monitor = new RefiningMonitor(task, 1);
+                    }
+                    return new ImagePair(originalImage, model.getGrayscaleImage(monitor));
+                },
+                images -> {
+                    if (images.left() != null && images.right() != null) {
+                        view.updateImageWithGrayScale(images.left(), images.right());
+                        updateHistoryActions();
+                    } else {
+                        view.showError("No image loaded. Please open a BMP file first.");
+                    }
+                },
+                e -> view.showError("Grayscale failed: " + e.getMessage()));
+    }
+    private void handleDitheringOperation() {
+        Dimension previewSize = previewSize();
+        tasks.submit("Applying " + model.getDitherMode() + " dithering", task -> {
+                    BufferedImage originalImage = model.getWorkingImage();
+                    ProgressMonitor grayMonitor = task;
+                    ProgressMonitor ditherMonitor = task;
+                    if (wantsPreview(previewSize, originalImage)) {
+                        BufferedImage grayProxy = model.getProxyImage(ImageModel.ImageState.GRAYSCALE, null,
+                                previewSize.width, previewSize.height);
+                        BufferedImage ditherProxy = model.getProxyImage(ImageModel.ImageState.ORDERED_DITHER, null,
+                                previewSize.width, previewSize.height);
+                        task.publish(() -> view.showPreview(originalImage.getWidth(), originalImage.getHeight(),
+                                grayProxy, ditherProxy));
+                        grayMonitor = new RefiningMonitor(task, 0);
+                        ditherMonitor = new RefiningMonitor(task, 1);
+                    }
+                    BufferedImage grayscaleImage = model.preview(ImageModel.ImageState.GRAYSCALE, grayMonitor.slice(0, 0.3));
+                    return new ImagePair(grayscaleImage, model.getDitheredImage(ditherMonitor.slice(0.3, 1)));
+                },
+                images -> {
+                    if (images.left() != null && images.right() != null) {
+                        view.updateImageWithDithering(images.left(), images.right());
+                        updateHistoryActions();
+                    } else {
+                        view.showError("No image loaded. Please open a BMP file first.");
+                    }
+                },
+                e -> view.showError("Dithering failed: " + e.getMessage()));
+    }
     private void handleAutoLevelOperation(){
-        BufferedImage originalImage = model.getImage();
-        BufferedImage autoLeveledImage = model.getAutoLevelImage();
-        if (autoLeveledImage != null) {
-            view.updateImageWithAutoLevel(originalImage, autoLeveledImage);
-        } else {
-            view.showError("No image loaded for auto leveling.");
-        }
+        Dimension previewSize = previewSize();
+        tasks.submit("Applying auto level", task -> {
+                    BufferedImage originalImage = model.getWorkingImage();
+                    ProgressMonitor monitor = previewAutoLevel(task, previewSize, originalImage, null);
+                    return new ImagePair(originalImage, model.getAutoLevelImage(monitor));
+                },
+                images -> {
+                    if (images.right() != null) {
+                        view.updateImageWithAutoLevel(images.left(), images.right());
+                        updateHistoryActions();
+                    } else {
+                        view.showError("No image loaded for auto leveling.");
+                    }
+                },
+                e -> view.showError("Auto level failed: " + e.getMessage()));
+    }
+
+    private void handleClippedAutoLevelOperation() {
+        Dimension previewSize = previewSize();
+        tasks.submit("Applying clipped auto level", task -> {
+                    BufferedImage originalImage = model.getWorkingImage();
+                    ProgressMonitor monitor = previewAutoLevel(task, previewSize, originalImage,
+                            new ImagePipeline.AutoLevel(0.5, 99.5));
+                    return new ImagePair(originalImage, model.getAutoLevelImage(0.5, 99.5, monitor));
+                },
+                images -> {
+                    if (images.right() != null) {
+                        view.updateImageWithAutoLevel(images.left(), images.right());
+                        updateHistoryActions();
+                    } else {
+                        view.showError("No image loaded for auto leveling.");
+                    }
+                },
+                e -> view.showError("Auto level failed: " + e.getMessage()));
     }
 
     private void handleExportOperation() { // New method to handle exporting the image
-        BufferedImage currentImage = model.getCurrentImage();
-        if (currentImage == null) {
+        if (model.getImage() == null) {
             view.showError("No image loaded to export.");
             return;
         }
 
+        // The result on screen is written as it is; while it is still a preview the current
+        // state is rendered instead, which is usually a cache hit.
+        BufferedImage displayed = view.getDisplayedResult();
         File file = view.showExportFileDialog();
         if (file != null) {
-            try {
-                model.saveImage(currentImage, file); // Delegate the save action to the model
-            } catch (IOException | ImageWriteException ex) {
-                view.showError("Failed to export image: " + ex.getMessage());
-            }
+            Export export = new Export(file);
+            activeExports.add(export);
+            updateExportStatus();
+            exports.submit(() -> export.run(displayed));
+        }
+    }
+
+    private void updateExportStatus() {
+        if (activeExports.isEmpty()) {
+            view.setBackgroundStatus(null);
+            return;
+        }
+        Export first = activeExports.get(0);
+        String more = activeExports.size() > 1 ? " and " + (activeExports.size() - 1) + " more" : "";
+        view.setBackgroundStatus("Exporting " + first.file.getName() + " (" + first.percent + "%)" + more);
+    }
+    private void handleLargeFileOperation() {
+        File input = view.showOpenFileDialog();
+        if (input == null) {
+            return;
+        }
+        ImageModel.ImageState operation = view.showChoiceDialog("Operation to apply:", new ImageModel.ImageState[]{
+                ImageModel.ImageState.GRAYSCALE, ImageModel.ImageState.ORDERED_DITHER, ImageModel.ImageState.AUTO_LEVEL});
+        if (operation == null) {
+            return;
+        }
+        File output = view.showExportFileDialog();
+        if (output != null) {
+            tasks.submit("Processing " + input.getName(), monitor -> {
+                        model.processLargeFile(input, output, operation, monitor);
+                        return output;
+                    },
+                    savedFile -> view.showMessage("Saved " + savedFile.getAbsolutePath()),
+                    ex -> view.showError("Failed to process image: " + ex.getMessage()));
         }
     }
     private void handleCropOperation() {
+        tasks.cancel();
         cropDialog.setVisible(true);
 
         BufferedImage croppedImage = model.getCropImage();
+        updateHistoryActions();
         if (croppedImage != null) {
             view.updateImage(croppedImage);
         } else {
             view.showError("Invalid crop area.");
         }
     }
+
+    private void handleHistoryOperation(String description, BooleanSupplier step) {
+        tasks.submit(description, monitor -> {
+                    if (!step.getAsBoolean()) {
+                        return null;
+                    }
+                    ImageModel.ImageState state = model.getCurrentState();
+                    BufferedImage result = model.getCurrentImage(monitor);
+                    BufferedImage working = state == ImageModel.ImageState.ORDERED_DITHER
+                            ? model.preview(ImageModel.ImageState.GRAYSCALE, monitor)
+                            : model.getWorkingImage();
+                    return new EditView(state, working, result);
+                },
+                edit -> {
+                    updateHistoryActions();
+                    if (edit != null) {
+                        showEdit(edit);
+                    }
+                },
+                e -> {
+                    updateHistoryActions();
+                    view.showError(description + " failed: " + e.getMessage());
+                });
+    }
+
+    private void showEdit(EditView edit) {
+        switch (edit.state()) {
+            case GRAYSCALE -> view.updateImageWithGrayScale(edit.working(), edit.result());
+            case ORDERED_DITHER -> view.updateImageWithDithering(edit.working(), edit.result());
+            case AUTO_LEVEL -> view.updateImageWithAutoLevel(edit.working(), edit.result());
+            default -> view.updateImage(edit.result());
+        }
+    }
+
+    private void updateHistoryActions() {
+        view.setUndoRedoEnabled(model.canUndo(), model.canRedo());
+    }
+
+    // Read on the EDT before submitting; null when progressive preview is switched off.
+    private Dimension previewSize() {
+        Dimension area = view.getImageAreaSize();
+        if (!view.isProgressivePreviewEnabled() || area.width <= 0 || area.height <= 0) {
+            return null;
+        }
+        return area;
+    }
+
+    private boolean wantsPreview(Dimension previewSize, BufferedImage image) {
+        return previewSize != null && image != null && (long) image.getWidth() * image.getHeight() >= PREVIEW_MIN_PIXELS;
+    }
+
+    private ProgressMonitor previewAutoLevel(ImageTaskExecutor.TaskContext task, Dimension previewSize,
+                                             BufferedImage originalImage, ImagePipeline.AutoLevel autoLevel) {
+        if (!wantsPreview(previewSize, originalImage)) {
+            return task;
+        }
+        BufferedImage proxy = model.getProxyImage(ImageModel.ImageState.AUTO_LEVEL, autoLevel,
+                previewSize.width, previewSize.height);
+        task.publish(() -> view.showPreview(originalImage.getWidth(), originalImage.getHeight(), originalImage, proxy));
+        return new RefiningMonitor(task, 1);
+    }
+
+    // One export in flight; progress and the outcome are handed to the EDT.
+    private final class Export implements ProgressMonitor {
+        private final File file;
+        private volatile int percent;
+
+        Export(File file) {
+            this.file = file;
+        }
+
+        void run(BufferedImage displayed) {
+            try {
+                BufferedImage image = displayed != null ? displayed : model.getCurrentImage();
+                model.saveImage(image, file, this);
+                SwingUtilities.invokeLater(() -> {
+                    finish();
+                    view.showMessage("Exported " + file.getAbsolutePath());
+                });
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    finish();
+                    view.showError("Failed to export image: " + e.getMessage());
+                });
+            }
+        }
+
+        private void finish() {
+            activeExports.remove(this);
+            updateExportStatus();
+        }
+
+        @Override
+        public void worked(double fraction) {
+            int next = (int) (fraction * 100);
+            if (next != percent) {
+                percent = next;
+                SwingUtilities.invokeLater(ImageController.this::updateExportStatus);
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+
+    // Forwards progress to the task and paints finished bands of the result over the preview in
+    // the given pane, batching them so the EDT sees at most one update per interval. Bands still
+    // pending at the end are covered by the final result.
+    private final class RefiningMonitor implements ProgressMonitor {
+        private final ImageTaskExecutor.TaskContext task;
+        private final int pane;
+        private final List<int[]> pending = new ArrayList<>();
+        private long lastPublished = System.nanoTime();
+
+        RefiningMonitor(ImageTaskExecutor.TaskContext task, int pane) {
+            this.task = task;
+            this.pane = pane;
+        }
+
+        @Override
+        public void worked(double fraction) {
+            task.worked(fraction);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public synchronized void bandCompleted(BufferedImage image, int fromY, int toY) {
+            pending.add(new int[]{fromY, toY});
+            long now = System.nanoTime();
+            if (now - lastPublished < REFINE_INTERVAL_NANOS) {
+                return;
+            }
+            lastPublished = now;
+            List<int[]> bands = new ArrayList<>(pending);
+            pending.clear();
+            task.publish(() -> {
+                for (int[] band : bands) {
+                    view.refinePreview(pane, image, band[0], band[1]);
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,282 @@
+package org.example.Controller;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import org.example.Model.BmpCodec;
+import org.example.Model.ImagePipeline;
+import org.example.Model.PixelEngine;
+import org.example.Model.Telemetry;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Headless mode: serves the image operations over HTTP on the loopback interface.
+//   POST /process?ops=<op,op,...>[&crop=x:y:width:height] with a BMP body
+// returns the processed BMP; ops use the batch syntax and the crop is applied before them.
+// Every exchange runs on its own virtual thread and the pixel work on a shared PixelEngine.
+// Requests are never queued: when all slots are busy, or the body plus the decoded and result
+// frames would take the in-flight memory estimate over its limit, the answer is 429 with
+// Retry-After so clients back off instead of the heap filling up.
+public class ImageServer {
+    private static final String USAGE = """
+            Usage: serve [--port N] [--max-concurrent N] [--max-inflight-mb M]
+              POST /process?ops=<op,op,...>[&crop=x:y:width:height] with a BMP body
+              ops: crop:x:y:width:height, grayscale, dither[:4|8|16|floyd-steinberg|atkinson], autolevel[:low%:high%] (applied in order)""";
+
+    private final int port;
+    private final int maxConcurrent;
+    private final int maxInFlightKb;
+    private final Semaphore slots;
+    private final Semaphore memory;
+    private final PixelEngine engine = new PixelEngine();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private HttpServer server;
+
+    public ImageServer(int port, int maxConcurrent, long maxInFlightMb) {
+        this.port = port;
+        this.maxConcurrent = maxConcurrent;
+        this.maxInFlightKb = (int) Math.min(Integer.MAX_VALUE, maxInFlightMb * 1024);
+        this.slots = new Semaphore(maxConcurrent);
+        this.memory = new Semaphore(maxInFlightKb);
+    }
+
+    public static int run(String[] args) {
+        ImageServer server;
+        try {
+            server = fromArguments(args);
+        } catch (IllegalArgumentException e) {
+            return CommandLine.usageError(e, USAGE);
+        }
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Cannot start server: " + e.getMessage());
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Listening on http://localhost:" + server.getPort() + "/process");
+        server.awaitStop();
+        return 0;
+    }
+
+    static ImageServer fromArguments(String[] args) {
+        CommandLine commandLine = CommandLine.parse(args, "--port", "--max-concurrent", "--max-inflight-mb");
+        int port = commandLine.getInt("--port", 8080);
+        int maxConcurrent = commandLine.getInt("--max-concurrent", Runtime.getRuntime().availableProcessors() * 2);
+        long maxInFlightMb = commandLine.getLong("--max-inflight-mb",
+                Runtime.getRuntime().maxMemory() / (1024 * 1024) * 3 / 4);
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        if (maxConcurrent < 1 || maxInFlightMb < 1) {
+            throw new IllegalArgumentException("--max-concurrent and --max-inflight-mb must be positive.");
+        }
+        return new ImageServer(port, maxConcurrent, maxInFlightMb);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxConcurrent * 4);
+        server.createContext("/process", this::handleProcess);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+        }
+        executor.shutdown();
+        stopped.countDown();
+    }
+
+    public void awaitStop() {
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleProcess(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Use POST with a BMP body.");
+                return;
+            }
+            ImagePipeline pipeline;
+            try {
+                pipeline = parsePipeline(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+            String lengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (lengthHeader == null) {
+                sendText(exchange, 411, "Content-Length is required.");
+                return;
+            }
+            long length;
+            try {
+                length = Long.parseLong(lengthHeader);
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "Invalid Content-Length.");
+                return;
+            }
+            if (length <= 0 || kilobytes(length) > maxInFlightKb || length > Integer.MAX_VALUE - 8) {
+                sendText(exchange, 413, "Body exceeds the in-flight memory limit.");
+                return;
+            }
+            if (!slots.tryAcquire()) {
+                sendBusy(exchange, "All " + maxConcurrent + " processing slots are busy.");
+                return;
+            }
+            try {
+                process(exchange, pipeline, (int) length);
+            } finally {
+                slots.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void process(HttpExchange exchange, ImagePipeline pipeline, int length) throws IOException {
+        int bodyKb = kilobytes(length);
+        if (!memory.tryAcquire(bodyKb)) {
+            sendBusy(exchange, "In-flight memory limit reached.");
+            return;
+        }
+        int framesKb = 0;
+        try (Telemetry.Span span = Telemetry.begin("serve")) {
+            byte[] body = exchange.getRequestBody().readNBytes(length);
+            if (body.length < length) {
+                sendText(exchange, 400, "Body shorter than Content-Length.");
+                return;
+            }
+            long pixels;
+            try {
+                pixels = BmpCodec.readPixelCount(ByteBuffer.wrap(body));
+            } catch (IOException | RuntimeException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+            // decoded source plus the fused pipeline's result frame, as estimated in batch mode
+            long frames = kilobytes(pixels * 4 * 2);
+            if (frames + bodyKb > maxInFlightKb) {
+                sendText(exchange, 413, "Image too large for the in-flight memory limit.");
+                return;
+            }
+            if (!memory.tryAcquire((int) frames)) {
+                sendBusy(exchange, "In-flight memory limit reached.");
+                return;
+            }
+            framesKb = (int) frames;
+
+            BufferedImage image;
+            try {
+                image = decode(body);
+            } catch (IOException | RuntimeException e) {
+                // commons-imaging reports some malformed files as runtime exceptions
+                sendText(exchange, 400, "Cannot decode BMP: " + e.getMessage());
+                return;
+            }
+            body = null;
+            span.image(image);
+            BufferedImage result;
+            try {
+                result = pipeline.execute(image, engine);
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                sendText(exchange, 500, "Processing failed: " + e);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/bmp");
+            exchange.sendResponseHeaders(200, BmpCodec.encodedSize(result));
+            try (OutputStream out = exchange.getResponseBody()) {
+                BmpCodec.write(result, Channels.newChannel(out));
+            }
+            span.succeeded();
+        } finally {
+            memory.release(bodyKb + framesKb);
+        }
+    }
+
+    private static BufferedImage decode(byte[] body) throws IOException {
+        BufferedImage image = BmpCodec.decode(ByteBuffer.wrap(body));
+        if (image == null) {
+            try {
+                image = Imaging.getBufferedImage(body);
+            } catch (ImageReadException e) {
+                throw new IOException("Unsupported BMP: " + e.getMessage(), e);
+            }
+        }
+        if (image == null) {
+            throw new IOException("Invalid BMP file.");
+        }
+        return image;
+    }
+
+    static ImagePipeline parsePipeline(String rawQuery) {
+        ImagePipeline pipeline = ImagePipeline.identity();
+        List<String> operations = new ArrayList<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+                switch (name) {
+                    case "ops" -> operations.addAll(Arrays.asList(value.split(",")));
+                    case "crop" -> pipeline = BatchRunner.parseOperations(pipeline, List.of("crop:" + value));
+                    default -> throw new IllegalArgumentException("Unknown parameter: " + name);
+                }
+            }
+        }
+        if (operations.isEmpty() && pipeline.stages().isEmpty()) {
+            throw new IllegalArgumentException("Expected ops=<op,op,...> and/or crop=x:y:width:height.");
+        }
+        return BatchRunner.parseOperations(pipeline, operations);
+    }
+
+    private static int kilobytes(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bytes + 1023) / 1024));
+    }
+
+    private static void sendBusy(HttpExchange exchange, String message) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendText(exchange, 429, message);
+    }
+
+    // Unread request bodies are discarded first, without buffering them, so clients still
+    // uploading see the answer instead of a reset connection.
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.Controller;
+import org.example.Model.ProgressMonitor;
+import org.example.View.ImageView;
+import javax.swing.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Runs model operations on virtual threads so the EDT never blocks on image work.
+// Only one operation is current at a time: submitting a new one cancels the running one,
+// and results of a stale operation are dropped instead of being shown.
+// submit and cancel must be called on the EDT.
+public class ImageTaskExecutor {
+    @FunctionalInterface
+    public interface Operation<T> {
+        T run(TaskContext task) throws Exception;
+    }
+
+    public interface TaskContext extends ProgressMonitor {
+        // Runs update on the EDT unless the task has been superseded or cancelled by then; for
+        // intermediate results such as previews.
+        void publish(Runnable update);
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ImageView view;
+    private Task<?> current;
+
+    public ImageTaskExecutor(ImageView view) {
+        this.view = view;
+    }
+
+    public <T> void submit(String description, Operation<T> operation, Consumer<T> onSuccess,
+                           Consumer<Throwable> onFailure) {
+        cancel();
+        Task<T> task = new Task<>(operation, onSuccess, onFailure);
+        current = task;
+        view.showProgress(description);
+        task.future = executor.submit(task::execute);
+    }
+
+    public void cancel() {
+        if (current != null) {
+            current.cancelled = true;
+            current.future.cancel(true);
+            if (current.published) {
+                view.discardPreview();
+            }
+            current = null;
+            view.hideProgress();
+        }
+    }
+
+    private final class Task<T> implements TaskContext {
+        private final Operation<T> operation;
+        private final Consumer<T> onSuccess;
+        private final Consumer<Throwable> onFailure;
+        private volatile boolean cancelled;
+        private volatile int lastPercent = -1;
+        // whether an intermediate result was shown; EDT only
+        private boolean published;
+        private Future<?> future;
+
+        Task(Operation<T> operation, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+            this.operation = operation;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+
+        void execute() {
+            try {
+                T result = operation.run(this);
+                SwingUtilities.invokeLater(() -> {
+                    if (finish()) {
+                        onSuccess.accept(result);
+                    }
+                });
+            } catch (CancellationException e) {
+                // superseded or cancelled by the user; nothing to report
+            } catch (Throwable e) {
+                // Errors too, such as running out of memory on a large image: only finish takes
+                // down the progress bar and wait cursor.
+                SwingUtilities.invokeLater(() -> {
+                    if (finish()) {
+                        if (published) {
+                            view.discardPreview();
+                        }
+                        onFailure.accept(e);
+                    }
+                });
+            }
+        }
+
+        // Runs on the EDT; false when this task has been replaced or cancelled meanwhile.
+        private boolean finish() {
+            if (current != this || cancelled) {
+                return false;
+            }
+            current = null;
+            view.hideProgress();
+            return true;
+        }
+
+        @Override
+        public void worked(double fraction) {
+            int percent = (int) (fraction * 100);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                SwingUtilities.invokeLater(() -> {
+                    if (current == this) {
+                        view.setProgress(percent);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void publish(Runnable update) {
+            SwingUtilities.invokeLater(() -> {
+                if (current == this && !cancelled) {
+                    published = true;
+                    update.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.Controller;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drives an ImageServer with a fixed number of concurrent clients, each posting the same BMP
+// back to back on a virtual thread, and reports throughput and latency percentiles of the
+// successful requests. 429 answers are counted separately and retried with exponential backoff,
+// capped at the server's Retry-After.
+public class LoadTestClient {
+    private static final String USAGE = """
+            Usage: loadtest --file <bmp> [--url <url>] [--ops <op,op,...>] [--concurrency N] [--requests N]
+              default url: http://localhost:8080/process, default ops: grayscale""";
+    private static final long MIN_BACKOFF_MILLIS = 10;
+
+    private final URI uri;
+    private final byte[] body;
+    private final int concurrency;
+    private final int requests;
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    public LoadTestClient(URI uri, byte[] body, int concurrency, int requests) {
+        this.uri = uri;
+        this.body = body;
+        this.concurrency = concurrency;
+        this.requests = requests;
+    }
+
+    public static int run(String[] args) {
+        try {
+            return fromArguments(args).run(System.out);
+        } catch (IllegalArgumentException e) {
+            return CommandLine.usageError(e, USAGE);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    static LoadTestClient fromArguments(String[] args) throws IOException {
+        CommandLine commandLine = CommandLine.parse(args, "--file", "--url", "--ops", "--concurrency", "--requests");
+        File file = commandLine.getFile("--file");
+        String url = commandLine.get("--url", "http://localhost:8080/process");
+        String ops = commandLine.get("--ops", "grayscale");
+        int concurrency = commandLine.getInt("--concurrency", 8);
+        int requests = commandLine.getInt("--requests", 200);
+        if (file == null || !file.isFile()) {
+            throw new IllegalArgumentException("--file must name a BMP file.");
+        }
+        if (concurrency < 1 || requests < 1) {
+            throw new IllegalArgumentException("--concurrency and --requests must be positive.");
+        }
+        URI uri = URI.create(url + (url.contains("?") ? "&" : "?") + "ops=" + ops);
+        return new LoadTestClient(uri, Files.readAllBytes(file.toPath()), concurrency, requests);
+    }
+
+    public int run(PrintStream out) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[requests];
+        AtomicInteger completed = new AtomicInteger();
+        long start = System.nanoTime();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < concurrency; c++) {
+                futures.add(clients.submit(() -> {
+                    for (int index = next.getAndIncrement(); index < requests; index = next.getAndIncrement()) {
+                        long latency = send(rejected, failures, out);
+                        if (latency >= 0) {
+                            latencies[completed.getAndIncrement()] = latency;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, completed.get());
+        Arrays.sort(sorted);
+        out.printf(Locale.ROOT, "%d requests, %d ok, %d failed, %d rejected with 429 (retried) in %.2f s%n",
+                requests, sorted.length, failures.get(), rejected.get(), seconds);
+        out.printf(Locale.ROOT, "Throughput: %.1f requests/s%n", sorted.length / seconds);
+        if (sorted.length > 0) {
+            out.printf(Locale.ROOT, "Latency: p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    BatchRunner.percentile(sorted, 0.50) / 1e6, BatchRunner.percentile(sorted, 0.90) / 1e6,
+                    BatchRunner.percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+        return failures.get() == 0 ? 0 : 1;
+    }
+
+    // Latency in nanoseconds of the first non-429 answer, including the backoff before retries;
+    // -1 when the request failed.
+    private long send(AtomicInteger rejected, AtomicInteger failures, PrintStream out) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "image/bmp")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        long start = System.nanoTime();
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (true) {
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() == 429) {
+                    rejected.incrementAndGet();
+                    long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1) * 1000;
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, retryAfter);
+                    continue;
+                }
+                if (response.statusCode() != 200) {
+                    failures.incrementAndGet();
+                    out.println("HTTP " + response.statusCode() + ": " + new String(response.body()).trim());
+                    return -1;
+                }
+                return System.nanoTime() - start;
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                out.println("FAILED: " + e.getMessage());
+                return -1;
+            }
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package org.example;
+import org.example.Controller.BatchRunner;
 import org.example.Controller.ImageController;
+import org.example.Controller.ImageServer;
+import org.example.Controller.LoadTestClient;
 import org.example.Model.ImageModel;
 import org.example.View.ImageView;
 import javax.swing.*;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("batch")) {
+            System.exit(BatchRunner.run(args));
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            System.exit(ImageServer.run(args));
+        }
+        if (args.length > 0 && args[0].equals("loadtest")) {
+            System.exit(LoadTestClient.run(args));
+        }
         SwingUtilities.invokeLater(() -> {
             ImageModel model = new ImageModel();
             ImageView view = new ImageView();
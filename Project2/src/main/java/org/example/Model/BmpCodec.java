@@ -0,0 +1,432 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Decodes uncompressed BMPs (24/32-bit, 8-bit palettized and 1-bit, bottom-up or top-down) from
+// a memory-mapped file straight into a pixel array, and writes BMPs in chunks of rows.
+// 8-bit files with a gray ramp palette load as TYPE_BYTE_GRAY and black-and-white 1-bit files as
+// TYPE_BYTE_BINARY; everything else loads as TYPE_INT_RGB. Gray and binary images are written
+// back as 8-bit and 1-bit BMPs, everything else as 24-bit. read returns null for variants it
+// does not handle (RLE, 4/16-bit, OS/2 headers, alpha bitfields) so callers can fall back to
+// commons-imaging.
+public final class BmpCodec {
+    static final int FILE_HEADER_SIZE = 14;
+    static final int INFO_HEADER_SIZE = 40;
+    private static final int BI_RGB = 0;
+    private static final int BI_BITFIELDS = 3;
+    private static final int PIXELS_PER_METER = 2835; // 72 DPI
+    private static final int WRITE_CHUNK_BYTES = 1 << 20;
+
+    private BmpCodec() {
+    }
+
+    static final class Header {
+        final int width;
+        final int height;
+        final boolean topDown;
+        final int bitsPerPixel;
+        final long dataOffset;
+        final int rowStride;
+        final int[] palette;
+
+        private Header(int width, int height, boolean topDown, int bitsPerPixel, long dataOffset, int[] palette) {
+            this.width = width;
+            this.height = height;
+            this.topDown = topDown;
+            this.bitsPerPixel = bitsPerPixel;
+            this.dataOffset = dataOffset;
+            this.rowStride = rowStride(width, bitsPerPixel);
+            this.palette = palette;
+        }
+
+        // Position of image row y (0 = top) relative to the start of the file.
+        long rowPosition(int y) {
+            int fileRow = topDown ? y : height - 1 - y;
+            return dataOffset + (long) fileRow * rowStride;
+        }
+
+        // Unpacks one stored row into 0xFFRRGGBB pixels.
+        void decodeRow(ByteBuffer data, int position, int[] dst, int dstOffset) {
+            switch (bitsPerPixel) {
+                case 24 -> {
+                    for (int x = 0; x < width; x++, position += 3) {
+                        dst[dstOffset + x] = 0xFF000000
+                                | (data.get(position + 2) & 0xFF) << 16
+                                | (data.get(position + 1) & 0xFF) << 8
+                                | (data.get(position) & 0xFF);
+                    }
+                }
+                case 32 -> {
+                    for (int x = 0; x < width; x++, position += 4) {
+                        dst[dstOffset + x] = 0xFF000000 | data.getInt(position);
+                    }
+                }
+                case 8 -> {
+                    for (int x = 0; x < width; x++) {
+                        dst[dstOffset + x] = palette[data.get(position + x) & 0xFF];
+                    }
+                }
+                default -> {
+                    for (int x = 0; x < width; x++) {
+                        int bits = data.get(position + (x >> 3));
+                        dst[dstOffset + x] = palette[(bits >> (7 - (x & 7))) & 1];
+                    }
+                }
+            }
+        }
+
+        boolean hasGrayPalette() {
+            return bitsPerPixel == 8 && Arrays.equals(palette, grayPalette());
+        }
+
+        boolean hasBlackWhitePalette() {
+            return bitsPerPixel == 1 && (palette[0] & 0xFFFFFF) == 0 && (palette[1] & 0xFFFFFF) == 0xFFFFFF;
+        }
+    }
+
+    static int[] grayPalette() {
+        int[] palette = new int[256];
+        for (int i = 0; i < 256; i++) {
+            palette[i] = 0xFF000000 | i * 0x010101;
+        }
+        return palette;
+    }
+
+    static int[] blackWhitePalette() {
+        return new int[]{0xFF000000, 0xFFFFFFFF};
+    }
+
+    // Bits per pixel this codec writes for the image.
+    static int bitsPerPixel(BufferedImage image) {
+        if (!RowWriter.isCompact(image)) {
+            return 24;
+        }
+        return image.getType() == BufferedImage.TYPE_BYTE_GRAY ? 8 : 1;
+    }
+
+    // Packs 0x00RRGGBB pixels into a stored row: BGR triplets, the blue channel as an 8-bit index
+    // into the gray palette, or one bit per pixel set when blue is at least 128.
+    static void encodeRow(int[] src, int srcOffset, int width, int bitsPerPixel, byte[] dst, int dstOffset) {
+        switch (bitsPerPixel) {
+            case 24 -> {
+                for (int x = 0, index = dstOffset; x < width; x++, index += 3) {
+                    int rgb = src[srcOffset + x];
+                    dst[index] = (byte) rgb;
+                    dst[index + 1] = (byte) (rgb >> 8);
+                    dst[index + 2] = (byte) (rgb >> 16);
+                }
+            }
+            case 8 -> {
+                for (int x = 0; x < width; x++) {
+                    dst[dstOffset + x] = (byte) src[srcOffset + x];
+                }
+            }
+            case 1 -> {
+                for (int x = 0, index = dstOffset; x < width; x += 8, index++) {
+                    int end = Math.min(width, x + 8);
+                    int bits = 0;
+                    for (int i = x; i < end; i++) {
+                        bits |= ((src[srcOffset + i] & 0x80) >> 7) << (7 - (i - x));
+                    }
+                    dst[index] = (byte) bits;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported bits per pixel: " + bitsPerPixel);
+        }
+    }
+
+    static int[] paletteFor(int bitsPerPixel) {
+        return switch (bitsPerPixel) {
+            case 8 -> grayPalette();
+            case 1 -> blackWhitePalette();
+            default -> new int[0];
+        };
+    }
+
+    static int rowStride(int width, int bitsPerPixel) {
+        return (int) ((((long) width * bitsPerPixel + 31) / 32) * 4);
+    }
+
+    // Returns null when the header describes a variant this codec does not decode.
+    static Header readHeader(ByteBuffer data) throws IOException {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < FILE_HEADER_SIZE + INFO_HEADER_SIZE || data.get(0) != 'B' || data.get(1) != 'M') {
+            throw new IOException("Invalid BMP file.");
+        }
+        long dataOffset = data.getInt(10) & 0xFFFFFFFFL;
+        int infoSize = data.getInt(14);
+        if (infoSize < INFO_HEADER_SIZE) {
+            return null;
+        }
+        int width = data.getInt(18);
+        int rawHeight = data.getInt(22);
+        int planes = data.getShort(26);
+        int bitsPerPixel = data.getShort(28);
+        int compression = data.getInt(30);
+        int colorsUsed = data.getInt(46);
+        if (width <= 0 || rawHeight == 0 || rawHeight == Integer.MIN_VALUE || planes != 1) {
+            throw new IOException("Invalid BMP dimensions.");
+        }
+
+        boolean supported = switch (bitsPerPixel) {
+            case 1, 8, 24 -> compression == BI_RGB;
+            case 32 -> compression == BI_RGB || (compression == BI_BITFIELDS && hasStandardMasks(data, infoSize));
+            default -> false;
+        };
+        if (!supported) {
+            return null;
+        }
+
+        int[] palette = null;
+        if (bitsPerPixel <= 8) {
+            int maxColors = 1 << bitsPerPixel;
+            int colors = colorsUsed == 0 ? maxColors : Math.min(colorsUsed, maxColors);
+            palette = new int[256];
+            int position = FILE_HEADER_SIZE + infoSize;
+            if (position + colors * 4L > data.limit()) {
+                throw new IOException("Truncated BMP palette.");
+            }
+            for (int i = 0; i < colors; i++, position += 4) {
+                palette[i] = 0xFF000000 | (data.getInt(position) & 0xFFFFFF);
+            }
+        }
+        return new Header(width, Math.abs(rawHeight), rawHeight < 0, bitsPerPixel, dataOffset, palette);
+    }
+
+    // Reads the headers and palette from the start of a file. The read reaches the pixel data, or
+    // the end of a full palette after the info header if that is further, so info headers of any
+    // size are accepted.
+    static Header readHeader(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE + INFO_HEADER_SIZE) {
+            throw new IOException("Invalid BMP file.");
+        }
+        ByteBuffer start = ByteBuffer.allocate(FILE_HEADER_SIZE + 4).order(ByteOrder.LITTLE_ENDIAN);
+        StreamingProcessor.readFully(channel, start, 0);
+        long dataOffset = start.getInt(10) & 0xFFFFFFFFL;
+        long paletteEnd = FILE_HEADER_SIZE + (start.getInt(14) & 0xFFFFFFFFL) + 256 * 4;
+        long length = Math.min(size, Math.max(dataOffset, paletteEnd));
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Invalid BMP header size.");
+        }
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) length);
+        StreamingProcessor.readFully(channel, headerBytes, 0);
+        headerBytes.flip();
+        return readHeader(headerBytes);
+    }
+
+    // 32-bit BI_BITFIELDS is handled only for plain X8R8G8B8 layouts without an alpha channel.
+    private static boolean hasStandardMasks(ByteBuffer data, int infoSize) {
+        int masks = FILE_HEADER_SIZE + INFO_HEADER_SIZE;
+        if (data.limit() < masks + 12) {
+            return false;
+        }
+        boolean rgb = data.getInt(masks) == 0xFF0000 && data.getInt(masks + 4) == 0xFF00 && data.getInt(masks + 8) == 0xFF;
+        boolean noAlpha = infoSize < INFO_HEADER_SIZE + 16 || data.getInt(masks + 12) == 0;
+        return rgb && noAlpha;
+    }
+
+    // Width times height from the header, for any BMP variant, without reading pixel data.
+    public static long readPixelCount(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE + 12);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            return readPixelCount(header);
+        }
+    }
+
+    public static long readPixelCount(ByteBuffer data) throws IOException {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < FILE_HEADER_SIZE + 12 || data.get(0) != 'B' || data.get(1) != 'M') {
+            throw new IOException("Invalid BMP file.");
+        }
+        if (data.getInt(14) == 12) {
+            return (long) (data.getShort(18) & 0xFFFF) * (data.getShort(20) & 0xFFFF);
+        }
+        return (long) Math.abs(data.getInt(18)) * Math.abs(data.getInt(22));
+    }
+
+    // A TYPE_INT_RGB copy scaled to fit maxWidth x maxHeight (never enlarged), sampled
+    // nearest-neighbour like PixelEngine.downsample. Reads only the header and the sampled rows,
+    // so it costs about the size of the thumbnail whatever the size of the file. Returns null
+    // for the variants read does not handle.
+    public static BufferedImage readThumbnail(File file, int maxWidth, int maxHeight) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            if (header == null) {
+                return null;
+            }
+            int width = header.width;
+            int height = header.height;
+            double scale = Math.min(1, Math.min((double) maxWidth / width, (double) maxHeight / height));
+            int targetWidth = Math.max(1, (int) Math.round(width * scale));
+            int targetHeight = Math.max(1, (int) Math.round(height * scale));
+            BufferedImage result = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            int[] dst = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+            int[] columns = new int[targetWidth];
+            for (int x = 0; x < targetWidth; x++) {
+                columns[x] = (int) ((x + 0.5) * width / targetWidth);
+            }
+            ByteBuffer rowBytes = ByteBuffer.allocate(header.rowStride).order(ByteOrder.LITTLE_ENDIAN);
+            int[] row = new int[width];
+            for (int y = 0; y < targetHeight; y++) {
+                int sourceY = (int) ((y + 0.5) * height / targetHeight);
+                rowBytes.clear();
+                StreamingProcessor.readFully(channel, rowBytes, header.rowPosition(sourceY));
+                header.decodeRow(rowBytes, 0, row, 0);
+                for (int x = 0; x < targetWidth; x++) {
+                    dst[y * targetWidth + x] = row[columns[x]] & 0xFFFFFF;
+                }
+            }
+            return result;
+        }
+    }
+
+    public static BufferedImage read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("BMP file too large to load into memory, use streaming mode: " + file);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(data);
+        }
+    }
+
+    public static BufferedImage decode(ByteBuffer data) throws IOException {
+        Header header = readHeader(data);
+        if (header == null) {
+            return null;
+        }
+        long pixels = (long) header.width * header.height;
+        if (pixels > Integer.MAX_VALUE - 8) {
+            throw new IOException("BMP has too many pixels to load into memory, use streaming mode: "
+                    + header.width + "x" + header.height);
+        }
+        long lastRowBytes = ((long) header.width * header.bitsPerPixel + 7) / 8;
+        if (header.rowPosition(header.topDown ? header.height - 1 : 0) + lastRowBytes > data.limit()) {
+            throw new IOException("Truncated BMP pixel data.");
+        }
+
+        if (header.hasGrayPalette() || header.hasBlackWhitePalette()) {
+            // Stored rows already have the raster's layout apart from padding.
+            BufferedImage image = new BufferedImage(header.width, header.height,
+                    header.bitsPerPixel == 8 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_BYTE_BINARY);
+            byte[] dst = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            int rowBytes = (int) lastRowBytes;
+            for (int y = 0; y < header.height; y++) {
+                data.get((int) header.rowPosition(y), dst, y * rowBytes, rowBytes);
+            }
+            return image;
+        }
+        BufferedImage image = new BufferedImage(header.width, header.height, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < header.height; y++) {
+            header.decodeRow(data, (int) header.rowPosition(y), dst, y * header.width);
+        }
+        return image;
+    }
+
+    public static void write(BufferedImage image, File file) throws IOException {
+        write(image, file, ProgressMonitor.NONE);
+    }
+
+    // Streams the image to the file through write(image, channel, monitor), so exports need no
+    // in-memory copy of the file and have no size limit beyond the format's.
+    public static void write(BufferedImage image, File file, ProgressMonitor monitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(image, channel, monitor);
+        }
+    }
+
+    // Size in bytes of the BMP written for the image.
+    public static long encodedSize(BufferedImage image) {
+        int bitsPerPixel = bitsPerPixel(image);
+        return FILE_HEADER_SIZE + INFO_HEADER_SIZE + paletteFor(bitsPerPixel).length * 4L
+                + (long) rowStride(image.getWidth(), bitsPerPixel) * image.getHeight();
+    }
+
+    public static void write(BufferedImage image, WritableByteChannel channel) throws IOException {
+        write(image, channel, ProgressMonitor.NONE);
+    }
+
+    // Encodes about WRITE_CHUNK_BYTES of rows at a time, bottom row first as BMP stores them,
+    // straight from the image's raster into one reused buffer. The monitor is checked per chunk.
+    public static void write(BufferedImage image, WritableByteChannel channel, ProgressMonitor monitor)
+            throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bitsPerPixel = bitsPerPixel(image);
+        int[] palette = paletteFor(bitsPerPixel);
+        int stride = rowStride(width, bitsPerPixel);
+
+        ByteBuffer headers = ByteBuffer.allocate(FILE_HEADER_SIZE + INFO_HEADER_SIZE + palette.length * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        writeHeaders(headers, width, height, bitsPerPixel, encodedSize(image), palette.length);
+        writePalette(headers, palette);
+        headers.flip();
+        writeFully(channel, headers);
+
+        int rowsPerChunk = Math.max(1, Math.min(height, WRITE_CHUNK_BYTES / stride));
+        ByteBuffer chunk = ByteBuffer.allocate(rowsPerChunk * stride);
+        byte[] bytes = chunk.array();
+        RowReader reader = RowReader.of(image);
+        for (int y = height - 1; y >= 0; ) {
+            int rows = 0;
+            for (; rows < rowsPerChunk && y >= 0; rows++, y--) {
+                int srcOffset = reader.load(y);
+                encodeRow(reader.data(), srcOffset, width, bitsPerPixel, bytes, rows * stride);
+            }
+            chunk.position(0).limit(rows * stride);
+            writeFully(channel, chunk);
+            monitor.worked((double) (height - 1 - y) / height);
+            monitor.checkCancelled();
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void writePalette(ByteBuffer buffer, int[] palette) {
+        for (int rgb : palette) {
+            buffer.putInt(rgb & 0xFFFFFF);
+        }
+    }
+
+    // Writes BITMAPFILEHEADER and BITMAPINFOHEADER for a bottom-up image. Sizes beyond the
+    // 32-bit fields (possible for streamed output) are written as 0, which readers accept for BI_RGB.
+    static void writeHeaders(ByteBuffer buffer, int width, int height, int bitsPerPixel, long fileSize, int paletteSize) {
+        int dataOffset = FILE_HEADER_SIZE + INFO_HEADER_SIZE + paletteSize * 4;
+        long imageSize = fileSize - dataOffset;
+        buffer.put((byte) 'B').put((byte) 'M');
+        buffer.putInt(fileSize > 0xFFFFFFFFL ? 0 : (int) fileSize);
+        buffer.putInt(0);
+        buffer.putInt(dataOffset);
+        buffer.putInt(INFO_HEADER_SIZE);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) bitsPerPixel);
+        buffer.putInt(BI_RGB);
+        buffer.putInt(imageSize > 0xFFFFFFFFL ? 0 : (int) imageSize);
+        buffer.putInt(PIXELS_PER_METER);
+        buffer.putInt(PIXELS_PER_METER);
+        buffer.putInt(paletteSize);
+        buffer.putInt(0);
+    }
+}
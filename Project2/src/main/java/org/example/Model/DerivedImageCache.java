@@ -0,0 +1,106 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// LRU cache of images derived from a source image. Entries are keyed by the identity of the
+// source (BufferedImage does not override equals), the operation name and its parameters, and
+// are evicted least-recently-used first once their pixel buffers exceed the byte budget.
+// Cached images are shared between callers and must not be modified.
+public class DerivedImageCache {
+    public static final long DEFAULT_BUDGET_BYTES = 512L * 1024 * 1024;
+
+    private record Key(BufferedImage source, String operation, Object parameters) {
+    }
+
+    private final LinkedHashMap<Key, BufferedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes;
+
+    public DerivedImageCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public DerivedImageCache(long budgetBytes) {
+        setBudgetBytes(budgetBytes);
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("Cache budget must not be negative: " + budgetBytes);
+        }
+        this.budgetBytes = budgetBytes;
+        evict();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized BufferedImage get(BufferedImage source, String operation, Object parameters) {
+        return entries.get(new Key(source, operation, parameters));
+    }
+
+    public synchronized void put(BufferedImage source, String operation, Object parameters, BufferedImage derived) {
+        long size = sizeOf(derived);
+        if (size > budgetBytes) {
+            return;
+        }
+        BufferedImage previous = entries.put(new Key(source, operation, parameters), derived);
+        if (previous != null) {
+            usedBytes -= sizeOf(previous);
+        }
+        usedBytes += size;
+        evict();
+    }
+
+    // The computation runs outside the lock, so two threads asking for the same missing entry
+    // may both compute it; the results are identical and the later one wins.
+    public BufferedImage computeIfAbsent(BufferedImage source, String operation, Object parameters,
+                                         Supplier<BufferedImage> computation) {
+        Objects.requireNonNull(source);
+        BufferedImage cached = get(source, operation, parameters);
+        if (cached != null) {
+            return cached;
+        }
+        BufferedImage derived = computation.get();
+        if (derived != null) {
+            put(source, operation, parameters, derived);
+        }
+        return derived;
+    }
+
+    public synchronized void invalidate() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    // Drops everything derived from source, which also releases the source itself.
+    public synchronized void invalidate(BufferedImage source) {
+        Iterator<Map.Entry<Key, BufferedImage>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = iterator.next();
+            if (entry.getKey().source() == source) {
+                usedBytes -= sizeOf(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, BufferedImage>> iterator = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            usedBytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
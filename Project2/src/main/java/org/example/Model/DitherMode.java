@@ -0,0 +1,36 @@
+package org.example.Model;
+
+// How ImageState.ORDERED_DITHER is rendered: ordered dithering with a Bayer matrix of the given
+// size, or error diffusion.
+public enum DitherMode {
+    ORDERED_4("Ordered 4x4", 4, null),
+    ORDERED_8("Ordered 8x8", 8, null),
+    ORDERED_16("Ordered 16x16", 16, null),
+    FLOYD_STEINBERG("Floyd-Steinberg", 0, ErrorDiffusion.FLOYD_STEINBERG),
+    ATKINSON("Atkinson", 0, ErrorDiffusion.ATKINSON);
+
+    private final String label;
+    private final int matrixSize;
+    private final ErrorDiffusion diffusion;
+
+    DitherMode(String label, int matrixSize, ErrorDiffusion diffusion) {
+        this.label = label;
+        this.matrixSize = matrixSize;
+        this.diffusion = diffusion;
+    }
+
+    // Appends this dithering, after a grayscale stage if the pipeline does not end in one.
+    public ImagePipeline applyTo(ImagePipeline pipeline) {
+        return diffusion == null ? pipeline.orderedDither(matrixSize) : pipeline.errorDiffusion(diffusion);
+    }
+
+    // Row kernel for a grayscale input streamed top to bottom, rows in order, on one thread.
+    RowKernel streamingKernel(int width) {
+        return diffusion == null ? Kernels.orderedDither(matrixSize, 0, 0) : diffusion.sequential(width);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
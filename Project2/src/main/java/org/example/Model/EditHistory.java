@@ -0,0 +1,125 @@
+package org.example.Model;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Undo/redo stacks of edit states. An entry records what is needed to rebuild a view from the
+// loaded image (operation, pipeline and crop rectangle) rather than its pixels, so stepping
+// through the history re-runs at most one fused pipeline, usually served from the derived image
+// cache. Once the entries exceed the byte budget the oldest undo steps are dropped first.
+// Histories are immutable values owned by an ImageDocument: every step returns a new history.
+public final class EditHistory {
+    public static final long DEFAULT_BUDGET_BYTES = 4L * 1024 * 1024;
+    private static final long ENTRY_BYTES = 96;
+    private static final long STAGE_BYTES = 48;
+
+    public record Entry(ImageModel.ImageState state, ImagePipeline.Crop crop, ImagePipeline pipeline) {
+        public Entry {
+            Objects.requireNonNull(state);
+            Objects.requireNonNull(pipeline);
+        }
+
+        long sizeInBytes() {
+            return ENTRY_BYTES + STAGE_BYTES * pipeline.stages().size();
+        }
+
+        boolean sameEdit(Entry other) {
+            return other != null && state == other.state && Objects.equals(crop, other.crop)
+                    && pipeline.equals(other.pipeline);
+        }
+    }
+
+    // Both stacks have their top at the end and their oldest entry first.
+    private final List<Entry> undo;
+    private final List<Entry> redo;
+    private final Entry current;
+    private final long budgetBytes;
+    private final long usedBytes;
+
+    private EditHistory(List<Entry> undo, List<Entry> redo, Entry current, long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("History budget must not be negative: " + budgetBytes);
+        }
+        List<Entry> keptUndo = new ArrayList<>(undo);
+        List<Entry> keptRedo = new ArrayList<>(redo);
+        long used = sizeOf(keptUndo) + sizeOf(keptRedo);
+        while (used > budgetBytes && !keptUndo.isEmpty()) {
+            used -= keptUndo.remove(0).sizeInBytes();
+        }
+        while (used > budgetBytes && !keptRedo.isEmpty()) {
+            used -= keptRedo.remove(0).sizeInBytes();
+        }
+        this.undo = List.copyOf(keptUndo);
+        this.redo = List.copyOf(keptRedo);
+        this.current = Objects.requireNonNull(current);
+        this.budgetBytes = budgetBytes;
+        this.usedBytes = used;
+    }
+
+    // A new history, e.g. after loading an image.
+    public static EditHistory start(Entry initial, long budgetBytes) {
+        return new EditHistory(List.of(), List.of(), initial, budgetBytes);
+    }
+
+    public EditHistory withBudget(long budgetBytes) {
+        return new EditHistory(undo, redo, current, budgetBytes);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    // Makes entry the current state; repeating the current edit is not recorded.
+    public EditHistory record(Entry entry) {
+        if (entry.sameEdit(current)) {
+            return new EditHistory(undo, redo, entry, budgetBytes);
+        }
+        List<Entry> nextUndo = new ArrayList<>(undo);
+        nextUndo.add(current);
+        return new EditHistory(nextUndo, List.of(), entry, budgetBytes);
+    }
+
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    public Entry current() {
+        return current;
+    }
+
+    // Returns the history after stepping back, whose current() is the state to restore, or null
+    // if there is nothing to undo.
+    public EditHistory undo() {
+        if (undo.isEmpty()) {
+            return null;
+        }
+        List<Entry> nextRedo = new ArrayList<>(redo);
+        nextRedo.add(current);
+        return new EditHistory(undo.subList(0, undo.size() - 1), nextRedo, undo.get(undo.size() - 1), budgetBytes);
+    }
+
+    public EditHistory redo() {
+        if (redo.isEmpty()) {
+            return null;
+        }
+        List<Entry> nextUndo = new ArrayList<>(undo);
+        nextUndo.add(current);
+        return new EditHistory(nextUndo, redo.subList(0, redo.size() - 1), redo.get(redo.size() - 1), budgetBytes);
+    }
+
+    private static long sizeOf(List<Entry> entries) {
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.sizeInBytes();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.Model;
+import java.util.Arrays;
+
+// Error diffusion filters: each pixel is thresholded at 128 and its error (value minus output) is
+// spread over neighbours that are not processed yet, weight / divisor each. Offsets point right
+// (dx > 0) on the same row or anywhere on the rows below.
+public enum ErrorDiffusion {
+    FLOYD_STEINBERG("Floyd-Steinberg", 16, new int[][]{{1, 0, 7}, {-1, 1, 3}, {0, 1, 5}, {1, 1, 1}}),
+    // Spreads only 6/8 of the error, which keeps highlights and shadows cleaner.
+    ATKINSON("Atkinson", 8, new int[][]{{1, 0, 1}, {2, 0, 1}, {-1, 1, 1}, {0, 1, 1}, {1, 1, 1}, {0, 2, 1}});
+
+    private final String label;
+    final int divisor;
+    final int[] dx;
+    final int[] dy;
+    final int[] weight;
+    // Rows below the current one that receive error.
+    final int rowsBelow;
+    // Largest sideways offset.
+    final int reach;
+    // How many pixels the row above must be ahead before a pixel's incoming error is complete.
+    final int lag;
+
+    ErrorDiffusion(String label, int divisor, int[][] targets) {
+        this.label = label;
+        this.divisor = divisor;
+        this.dx = new int[targets.length];
+        this.dy = new int[targets.length];
+        this.weight = new int[targets.length];
+        int rows = 0;
+        int side = 0;
+        int behind = 0;
+        for (int i = 0; i < targets.length; i++) {
+            dx[i] = targets[i][0];
+            dy[i] = targets[i][1];
+            weight[i] = targets[i][2];
+            rows = Math.max(rows, dy[i]);
+            side = Math.max(side, Math.abs(dx[i]));
+            if (dy[i] > 0 && dx[i] < 0) {
+                behind = Math.max(behind, (-dx[i] + dy[i] - 1) / dy[i]);
+            }
+        }
+        this.rowsBelow = rows;
+        this.reach = side;
+        this.lag = behind;
+    }
+
+    // A kernel that must be called for rows 0, 1, 2, ... in order on one thread, and that keeps
+    // the error still owed to the rows below between calls; for callers that stream rows.
+    RowKernel sequential(int width) {
+        int[][] pending = new int[rowsBelow + 1][width + 2 * reach];
+        int[] line = new int[width + 2 * reach];
+        return (src, srcOffset, dst, dstOffset, ignored, y) -> {
+            int[] own = pending[y % pending.length];
+            Arrays.fill(line, 0);
+            for (int x = 0; x < width; x++) {
+                int incoming = own[x + reach] + line[x + reach];
+                int value = ((src[srcOffset + x] >> 16) & 0xFF) + Math.floorDiv(incoming + divisor / 2, divisor);
+                int level = value >= 128 ? 255 : 0;
+                dst[dstOffset + x] = level == 255 ? 0xFFFFFF : 0;
+                int error = value - level;
+                for (int t = 0; t < weight.length; t++) {
+                    int[] target = dy[t] == 0 ? line : pending[(y + dy[t]) % pending.length];
+                    target[x + dx[t] + reach] += error * weight[t];
+                }
+            }
+            Arrays.fill(own, 0);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+// One open image as an immutable snapshot: the loaded pixels with their tile histograms, the
+// current operation, crop and pipeline, and the edit history. Edits return new documents that
+// share the pixels, so threads rendering from one snapshot are never affected by an edit that
+// replaces it, and any number of documents can be open side by side.
+// The loaded image and the crop view must not be modified.
+public final class ImageDocument {
+    private final BufferedImage image;
+    private final BufferedImage working;
+    private final TileHistograms histograms;
+    private final ImageModel.ImageState state;
+    private final ImagePipeline.Crop crop;
+    private final ImagePipeline pipeline;
+    private final EditHistory history;
+
+    private ImageDocument(BufferedImage image, BufferedImage working, TileHistograms histograms,
+                          ImageModel.ImageState state, ImagePipeline.Crop crop, ImagePipeline pipeline,
+                          EditHistory history) {
+        this.image = image;
+        this.working = working;
+        this.histograms = histograms;
+        this.state = state;
+        this.crop = crop;
+        this.pipeline = pipeline;
+        this.history = history;
+    }
+
+    public static ImageDocument open(BufferedImage image, TileHistograms histograms, long historyBudgetBytes) {
+        Objects.requireNonNull(image);
+        EditHistory.Entry initial = new EditHistory.Entry(ImageModel.ImageState.ORIGINAL, null, ImagePipeline.identity());
+        return new ImageDocument(image, image, histograms, initial.state(), null, initial.pipeline(),
+                EditHistory.start(initial, historyBudgetBytes));
+    }
+
+    public BufferedImage image() {
+        return image;
+    }
+
+    // The crop if one is active, otherwise the loaded image; operations are applied to this.
+    public BufferedImage workingImage() {
+        return working;
+    }
+
+    public TileHistograms histograms() {
+        return histograms;
+    }
+
+    public ImageModel.ImageState state() {
+        return state;
+    }
+
+    public ImagePipeline.Crop crop() {
+        return crop;
+    }
+
+    // Renders the current view from image().
+    public ImagePipeline pipeline() {
+        return pipeline;
+    }
+
+    public EditHistory history() {
+        return history;
+    }
+
+    // The pipeline that renders state for the active crop.
+    public ImagePipeline pipelineFor(ImageModel.ImageState state) {
+        return ImagePipeline.forState(state, crop);
+    }
+
+    public ImagePipeline pipelineFor(ImageModel.ImageState state, ImagePipeline.AutoLevel autoLevel) {
+        return ImagePipeline.forState(state, crop, autoLevel);
+    }
+
+    public ImagePipeline pipelineFor(ImageModel.ImageState state, ImagePipeline.AutoLevel autoLevel,
+                                     DitherMode dither) {
+        return ImagePipeline.forState(state, crop, autoLevel, dither);
+    }
+
+    // True when a pipeline built for other renders the same pixels for this document.
+    public boolean sameSource(ImageDocument other) {
+        return other != null && image == other.image && Objects.equals(crop, other.crop);
+    }
+
+    // The document showing pipeline as the result of state, recorded in the history.
+    public ImageDocument withEdit(ImageModel.ImageState state, ImagePipeline pipeline) {
+        return record(new EditHistory.Entry(state, crop, pipeline));
+    }
+
+    // Selects the given region of the loaded image; throws if it is out of bounds.
+    public ImageDocument withCrop(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0
+                || x + width > image.getWidth() || y + height > image.getHeight()) {
+            throw new IllegalArgumentException("Crop area out of bounds.");
+        }
+        ImagePipeline.Crop region = new ImagePipeline.Crop(x, y, width, height);
+        return record(new EditHistory.Entry(ImageModel.ImageState.CROPPED, region,
+                ImagePipeline.forState(ImageModel.ImageState.CROPPED, region)));
+    }
+
+    // Drops the crop and shows the current operation, with the same settings, on the whole image,
+    // without recording it; null if there is no crop.
+    public ImageDocument withoutCrop() {
+        if (crop == null) {
+            return null;
+        }
+        ImagePipeline uncropped = pipeline.leadingCrop() == null ? ImagePipeline.forState(state, null)
+                : pipeline.slice(1, pipeline.stages().size());
+        return restore(new EditHistory.Entry(state, null, uncropped), history);
+    }
+
+    // Sets the state without recording it.
+    public ImageDocument withState(ImageModel.ImageState state) {
+        return restore(new EditHistory.Entry(state, crop, pipelineFor(state)), history);
+    }
+
+    public ImageDocument withHistoryBudget(long budgetBytes) {
+        return restore(new EditHistory.Entry(this.state, crop, pipeline), history.withBudget(budgetBytes));
+    }
+
+    // The document one step back in the history, or null if there is nothing to undo.
+    public ImageDocument undo() {
+        EditHistory previous = history.undo();
+        return previous == null ? null : restore(previous.current(), previous);
+    }
+
+    public ImageDocument redo() {
+        EditHistory next = history.redo();
+        return next == null ? null : restore(next.current(), next);
+    }
+
+    private ImageDocument record(EditHistory.Entry entry) {
+        return restore(entry, history.record(entry));
+    }
+
+    private ImageDocument restore(EditHistory.Entry entry, EditHistory history) {
+        ImagePipeline.Crop region = entry.crop();
+        BufferedImage view = Objects.equals(region, crop) ? working
+                : region == null ? image : image.getSubimage(region.x(), region.y(), region.width(), region.height());
+        return new ImageDocument(image, view, histograms, entry.state(), region, entry.pipeline(), history);
+    }
+}
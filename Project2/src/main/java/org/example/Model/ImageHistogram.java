@@ -0,0 +1,97 @@
+package org.example.Model;
+
+// Per-channel 256-bin histograms. Built once per loaded image or crop and then used to derive
+// auto level ranges, including percentile-clipped ones, without touching the pixels again.
+public class ImageHistogram implements PixelEngine.RowVisitor {
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+
+    private final long[][] counts = new long[3][256];
+    private long total;
+
+    @Override
+    public void visit(int[] src, int srcOffset, int width, int y) {
+        long[] red = counts[RED];
+        long[] green = counts[GREEN];
+        long[] blue = counts[BLUE];
+        int end = srcOffset + width;
+        for (int i = srcOffset; i < end; i++) {
+            int rgb = src[i];
+            red[(rgb >> 16) & 0xFF]++;
+            green[(rgb >> 8) & 0xFF]++;
+            blue[rgb & 0xFF]++;
+        }
+        total += width;
+    }
+
+    public ImageHistogram merge(ImageHistogram other) {
+        for (int channel = 0; channel < 3; channel++) {
+            for (int value = 0; value < 256; value++) {
+                counts[channel][value] += other.counts[channel][value];
+            }
+        }
+        total += other.total;
+        return this;
+    }
+
+    // Adds bins laid out as red[256], green[256], blue[256] starting at offset, covering pixels pixels.
+    void add(int[] bins, int offset, long pixels) {
+        for (int channel = 0; channel < 3; channel++) {
+            long[] channelCounts = counts[channel];
+            int base = offset + channel * 256;
+            for (int value = 0; value < 256; value++) {
+                channelCounts[value] += bins[base + value];
+            }
+        }
+        total += pixels;
+    }
+
+    public long count(int channel, int value) {
+        return counts[channel][value];
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int[] min() {
+        return lowerBound(0);
+    }
+
+    public int[] max() {
+        return upperBound(100);
+    }
+
+    // Per channel, the smallest value whose cumulative count exceeds percent of all pixels;
+    // 0 gives the minimum.
+    public int[] lowerBound(double percent) {
+        long threshold = (long) Math.floor(total * percent / 100);
+        int[] bounds = new int[3];
+        for (int channel = 0; channel < 3; channel++) {
+            long cumulative = 0;
+            int value = 0;
+            while (value < 255 && (cumulative += counts[channel][value]) <= threshold) {
+                value++;
+            }
+            bounds[channel] = value;
+        }
+        return bounds;
+    }
+
+    // Per channel, the largest value whose count from the top exceeds (100 - percent) of all
+    // pixels; 100 gives the maximum.
+    public int[] upperBound(double percent) {
+        long threshold = (long) Math.floor(total * (100 - percent) / 100);
+        int[] bounds = new int[3];
+        for (int channel = 0; channel < 3; channel++) {
+            long cumulative = 0;
+            int value = 255;
+            while (value > 0 && (cumulative += counts[channel][value]) <= threshold) {
+                value--;
+            }
+            bounds[channel] = value;
+        }
+        return bounds;
+    }
+}
@@ -1,173 +1,247 @@
 package org.example.Model;
-import org.apache.commons.imaging.ImageFormats;
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.ImageWriteException;
-import org.apache.commons.imaging.Imaging;
 import org.example.View.CropDialog;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+// Facade for one open document, kept for the Swing controller and batch mode. The state is a
+// single immutable ImageDocument swapped atomically: renders read a snapshot, and an edit is
+// committed only if the document still has the same image and crop it was rendered from, so
+// concurrent operations never see or produce a half-updated model. Models that share an
+// ImageOperations share its worker pool and result cache.
 public class ImageModel implements CropDialog.CropListener{
-    private BufferedImage image;
-    private BufferedImage cropImage;
-    private int imageWidth;
-    private int imageHeight;
     public enum ImageState {
         ORIGINAL, GRAYSCALE, ORDERED_DITHER, AUTO_LEVEL, CROPPED
     }
-    private static final int RED = 0;
-    private static final int GREEN = 1;
-    private static final int BLUE = 2;
-    private ImageState currentState;
+    private static final ImagePipeline.AutoLevel DEFAULT_AUTO_LEVEL = new ImagePipeline.AutoLevel(0, 100);
+    private final ImageOperations operations;
+    private final AtomicReference<ImageDocument> document = new AtomicReference<>();
+    private volatile long historyBudget = EditHistory.DEFAULT_BUDGET_BYTES;
+    private volatile DitherMode ditherMode = DitherMode.ORDERED_4;
+
+    public ImageModel() {
+        this(new ImageOperations());
+    }
+
+    public ImageModel(ImageOperations operations) {
+        this.operations = operations;
+    }
+
     public void readBmpFile(File bmpFile) throws IOException {
-        try {
-            image = Imaging.getBufferedImage(bmpFile);
-        } catch (ImageReadException e) {
-            throw new RuntimeException(e);
-        }
-        if (image == null) {
-            throw new IOException("Invalid BMP file.");
+        try (Telemetry.Span span = Telemetry.begin("load")) {
+            ImageDocument loaded = operations.load(bmpFile, historyBudget);
+            span.image(loaded.image());
+            ImageDocument previous = document.getAndSet(loaded);
+            if (previous != null) {
+                operations.close(previous);
+            }
+            span.succeeded();
         }
-        imageWidth = image.getWidth();
-        imageHeight = image.getHeight();
-        currentState = ImageState.ORIGINAL;
+    }
+    // The current snapshot, or null before an image is loaded.
+    public ImageDocument getDocument() {
+        return document.get();
     }
     public BufferedImage getImage(){
-        return image;
+        ImageDocument current = document.get();
+        return current == null ? null : current.image();
+    }
+    // The crop if one is active, otherwise the loaded image; operations are applied to this.
+    public BufferedImage getWorkingImage() {
+        ImageDocument current = document.get();
+        return current == null ? null : current.workingImage();
     }
     public BufferedImage getCurrentImage() {
-        return switch (currentState) {
-            case GRAYSCALE -> getGrayscaleImage();
-            case ORDERED_DITHER -> getDitheredImage();
-            case AUTO_LEVEL -> getAutoLevelImage();
-            case CROPPED -> getCropImage();
-            default -> image;
-        };
+        return getCurrentImage(ProgressMonitor.NONE);
+    }
+    public BufferedImage getCurrentImage(ProgressMonitor monitor) {
+        ImageDocument current = document.get();
+        return current == null ? null : operations.render(current, current.pipeline(), monitor);
+    }
+    public ImageState getCurrentState() {
+        ImageDocument current = document.get();
+        return current == null ? null : current.state();
     }
     public BufferedImage getCropImage() {
-        return cropImage;
+        ImageDocument current = document.get();
+        return current == null || current.crop() == null ? null : current.workingImage();
     }
     @Override
     public void onCrop(int x, int y, int width, int height) {
 //        System.out.println("Requested crop: x=" + x + ", y=" + y + ", width=" + width + ", height=" + height);
-//        System.out.println("Image dimensions: width=" + imageWidth + ", height=" + imageHeight);
-        if (image == null) {
+        ImageDocument current = document.get();
+        if (current == null) {
             System.out.println("No image loaded.");
-            cropImage = null;
             return;
         }
 
-        if (x < 0 || y < 0 || x + width > imageWidth || y + height > imageHeight) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0
+                || x + width > current.image().getWidth() || y + height > current.image().getHeight()) {
             System.out.println("Crop area out of bounds.");
-            cropImage = null;
+            update(ImageDocument::withoutCrop);
             return;
         }
 
-        cropImage = image.getSubimage(x, y, width, height);
-        setCurrentState(ImageState.CROPPED);
+        try (Telemetry.Span span = Telemetry.begin("crop")) {
+            // Results for the whole image stay valid and are what crops are sliced from.
+            update(base -> base.withCrop(x, y, width, height));
+            span.image(getCropImage());
+            span.succeeded();
+        }
+    }
+
+    public void setParallelism(int parallelism) {
+        operations.engine().setParallelism(parallelism);
+    }
+
+    public void setTileHeight(int tileHeight) {
+        operations.engine().setTileHeight(tileHeight);
     }
 
+    public void setCacheBudget(long bytes) {
+        operations.cache().setBudgetBytes(bytes);
+    }
+
+    public void setHistoryBudget(long bytes) {
+        historyBudget = bytes;
+        update(base -> base.withHistoryBudget(bytes));
+    }
+
+    // Used by the next dithering; the current image is not re-rendered.
+    public void setDitherMode(DitherMode mode) {
+        ditherMode = Objects.requireNonNull(mode);
+    }
+
+    public DitherMode getDitherMode() {
+        return ditherMode;
+    }
+
+    // Shows state for the active crop without recording it in the history.
     public void setCurrentState(ImageState state) {
-        this.currentState = state;
+        update(base -> base.withState(state));
     }
 
     public BufferedImage getGrayscaleImage() {
-        if (image == null) return null;
-        BufferedImage grayImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-
-        for (int y = 0; y < imageHeight; y++) {
-            for (int x = 0; x < imageWidth; x++) {
-                Color c = new Color(image.getRGB(x, y));
-                int red = (int) (c.getRed()*0.299);
-                int green = (int) (c.getGreen()*0.587);
-                int blue = (int) (c.getBlue()*0.114);
-                Color newColor = new Color(red+green+blue, red+green+blue, red+green+blue);
-                grayImage.setRGB(x, y, newColor.getRGB());
-            }
-        }
-        setCurrentState(ImageState.GRAYSCALE);
-        return grayImage;
+        return getGrayscaleImage(ProgressMonitor.NONE);
+    }
+
+    public BufferedImage getGrayscaleImage(ProgressMonitor monitor) {
+        return apply(ImageState.GRAYSCALE, null, monitor);
     }
 
     public BufferedImage getDitheredImage() {
-        BufferedImage grayImage = getGrayscaleImage();
-        if (grayImage == null) return null;
-
-        int[][] ditherMatrix = {
-                {0, 8, 2, 10},
-                {12, 4, 14, 6},
-                {3, 11, 1, 9},
-                {15, 7, 13, 5},
-        };
-        int matrixSize = ditherMatrix.length;
-        BufferedImage ditheredImage = new BufferedImage(grayImage.getWidth(), grayImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-        for (int x = 0; x < grayImage.getWidth(); x++) {
-            for (int y = 0; y < grayImage.getHeight(); y++) {
-                int input = new Color(grayImage.getRGB(x, y)).getRed();
-                int scaledInput = input * matrixSize * matrixSize / 256;
-                int i = x % matrixSize;
-                int j = y % matrixSize;
-                int dither = (ditherMatrix[i][j]);
-
-                int output = (scaledInput > dither) ? 255 : 0;
-                ditheredImage.setRGB(x, y, new Color(output, output, output).getRGB());
-            }
-        }
-        setCurrentState(ImageState.ORDERED_DITHER);
-        return ditheredImage;
+        return getDitheredImage(ProgressMonitor.NONE);
+    }
+
+    public BufferedImage getDitheredImage(ProgressMonitor monitor) {
+        return apply(ImageState.ORDERED_DITHER, null, monitor);
     }
 
     public BufferedImage getAutoLevelImage() {
-        if (image == null) {
-            return null;
-        }
+        return getAutoLevelImage(ProgressMonitor.NONE);
+    }
 
-        int[] minRGB = {255, 255, 255};
-        int[] maxRGB = {0, 0, 0};
+    public BufferedImage getAutoLevelImage(ProgressMonitor monitor) {
+        return apply(ImageState.AUTO_LEVEL, null, monitor);
+    }
 
-        for (int y = 0; y < imageHeight; y++) {
-            for (int x = 0; x < imageWidth; x++) {
-                Color color = new Color(image.getRGB(x, y));
-                int red = color.getRed();
-                int green = color.getGreen();
-                int blue = color.getBlue();
+    // Auto level that ignores the darkest lowPercent and brightest (100 - highPercent) of each channel.
+    public BufferedImage getAutoLevelImage(double lowPercent, double highPercent, ProgressMonitor monitor) {
+        return apply(ImageState.AUTO_LEVEL, new ImagePipeline.AutoLevel(lowPercent, highPercent), monitor);
+    }
 
-                minRGB[RED] = Math.min(minRGB[RED], red);
-                minRGB[GREEN] = Math.min(minRGB[GREEN], green);
-                minRGB[BLUE] = Math.min(minRGB[BLUE], blue);
+    // Renders state for the active crop without making it the current state or recording it.
+    public BufferedImage preview(ImageState state, ProgressMonitor monitor) {
+        ImageDocument current = document.get();
+        return current == null ? null
+                : operations.render(current, current.pipelineFor(state, DEFAULT_AUTO_LEVEL, ditherMode), monitor);
+    }
 
-                maxRGB[RED] = Math.max(maxRGB[RED], red);
-                maxRGB[GREEN] = Math.max(maxRGB[GREEN], green);
-                maxRGB[BLUE] = Math.max(maxRGB[BLUE], blue);
-            }
+    // The result of state (with the given auto level percentiles, or the defaults when null) for
+    // the active crop, computed on a copy of it scaled to fit maxWidth x maxHeight. Meant as an
+    // instant stand-in while the full-resolution result is computed.
+    public BufferedImage getProxyImage(ImageState state, ImagePipeline.AutoLevel autoLevel, int maxWidth, int maxHeight) {
+        ImageDocument current = document.get();
+        if (current == null) {
+            return null;
         }
+        ImagePipeline pipeline = ImagePipeline.forState(state, null,
+                autoLevel == null ? DEFAULT_AUTO_LEVEL : autoLevel, ditherMode);
+        return operations.proxy(current, pipeline, maxWidth, maxHeight);
+    }
+
+    public boolean canUndo() {
+        ImageDocument current = document.get();
+        return current != null && current.history().canUndo();
+    }
+
+    public boolean canRedo() {
+        ImageDocument current = document.get();
+        return current != null && current.history().canRedo();
+    }
 
-        BufferedImage autoLeveledImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-        for (int y = 0; y < imageHeight; y++) {
-            for (int x = 0; x < imageWidth; x++) {
-                Color color = new Color(image.getRGB(x, y));
-                int red = color.getRed();
-                int green = color.getGreen();
-                int blue = color.getBlue();
+    // Steps back one edit; the caller re-renders with getCurrentImage.
+    public boolean undo() {
+        return update(ImageDocument::undo);
+    }
 
-                red = stretch(red, minRGB[0], maxRGB[0]);
-                green = stretch(green, minRGB[1], maxRGB[1]);
-                blue = stretch(blue, minRGB[2], maxRGB[2]);
+    public boolean redo() {
+        return update(ImageDocument::redo);
+    }
 
-                Color newColor = new Color(red, green, blue);
-                autoLeveledImage.setRGB(x, y, newColor.getRGB());
+    // Replaces the document with step(document) unless there is none or step returns null.
+    private boolean update(UnaryOperator<ImageDocument> step) {
+        while (true) {
+            ImageDocument base = document.get();
+            if (base == null) {
+                return false;
+            }
+            ImageDocument next = step.apply(base);
+            if (next == null) {
+                return false;
+            }
+            if (document.compareAndSet(base, next)) {
+                return true;
             }
         }
-
-        return autoLeveledImage;
     }
-    private int stretch(int value, int min, int max) {
-        if (max == min) {
-            return value; // Avoid division by zero if all values are the same
+
+    private BufferedImage apply(ImageState state, ImagePipeline.AutoLevel autoLevel, ProgressMonitor monitor) {
+        ImageDocument base = document.get();
+        if (base == null) {
+            return null;
         }
-        return Math.min(255, Math.max(0, (value - min) * 255 / (max - min)));
+        DitherMode dither = ditherMode;
+        ImagePipeline pipeline = base.pipelineFor(state, autoLevel == null ? DEFAULT_AUTO_LEVEL : autoLevel, dither);
+        try (Telemetry.Span span = Telemetry.begin(operationName(state, dither))) {
+            BufferedImage result = operations.render(base, pipeline, monitor);
+            if (result != null) {
+                // A cancelled operation must not replace the edit of the one that superseded it.
+                monitor.checkCancelled();
+                boolean committed = update(current -> current.sameSource(base) ? current.withEdit(state, pipeline) : null);
+                if (!committed) {
+                    throw new CancellationException("The image or crop changed during " + state + ".");
+                }
+            }
+            span.image(result).succeeded();
+            return result;
+        }
+    }
+
+    // Telemetry name of an operation; dithering is split by mode, whose costs differ widely.
+    private static String operationName(ImageState state, DitherMode dither) {
+        String name = state == ImageState.ORDERED_DITHER ? "dither_" + dither.name() : state.name();
+        return name.toLowerCase(Locale.ROOT);
     }
 
     private int clamp(int value) {
@@ -179,9 +253,41 @@ public class ImageModel implements CropDialog.CropListener{
         return (colorValue - minIntensity) * 255 / (maxIntensity - minIntensity);
     }
 
-    public void saveImage(BufferedImage editedImage, File file) throws IOException, ImageWriteException {
+    // Processes a file without loading it, for BMPs larger than the heap.
+    public void processLargeFile(File input, File output, ImageState operation, ProgressMonitor monitor)
+            throws IOException {
+        DitherMode dither = ditherMode;
+        try (Telemetry.Span span = Telemetry.begin("stream_" + operationName(operation, dither))) {
+            try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+                BmpCodec.Header header = StreamingProcessor.readHeader(channel);
+                span.dimensions(header.width, header.height);
+            }
+            new StreamingProcessor().process(input, output, operation, dither, monitor);
+            span.succeeded();
+        }
+    }
+
+    public void saveImage(BufferedImage editedImage, File file) throws IOException {
+        saveImage(editedImage, file, ProgressMonitor.NONE);
+    }
+
+    // Writes the image next to file and moves it into place once complete, so a failed or
+    // cancelled export never leaves a truncated file behind. Images handed out by the model are
+    // never modified, so this can run while other operations continue.
+    public void saveImage(BufferedImage editedImage, File file, ProgressMonitor monitor) throws IOException {
         if (editedImage != null) {
-            Imaging.writeImage(editedImage, file, ImageFormats.BMP);
+            try (Telemetry.Span span = Telemetry.begin("export")) {
+                span.image(editedImage);
+                Path target = file.toPath().toAbsolutePath();
+                Path partial = target.resolveSibling(target.getFileName() + ".part");
+                try {
+                    BmpCodec.write(editedImage, partial.toFile(), monitor);
+                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(partial);
+                }
+                span.succeeded();
+            }
         }
     }
 }
@@ -0,0 +1,119 @@
+package org.example.Model;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+// Loading and rendering for ImageDocuments. Operations never modify a document: load returns a
+// new one and render returns an image, so one instance, with its PixelEngine pool and derived
+// image cache, can serve several documents and any number of concurrent operations.
+public final class ImageOperations {
+    private final PixelEngine engine;
+    private final DerivedImageCache cache;
+
+    // Instances built without an engine share this one, so creating models never starts more
+    // worker pools; settings such as its parallelism apply to all of them.
+    private static final class DefaultEngine {
+        static final PixelEngine INSTANCE = new PixelEngine();
+    }
+
+    public ImageOperations() {
+        this(DefaultEngine.INSTANCE, new DerivedImageCache());
+    }
+
+    public ImageOperations(PixelEngine engine, DerivedImageCache cache) {
+        this.engine = engine;
+        this.cache = cache;
+    }
+
+    public PixelEngine engine() {
+        return engine;
+    }
+
+    public DerivedImageCache cache() {
+        return cache;
+    }
+
+    public ImageDocument load(File bmpFile, long historyBudgetBytes) throws IOException {
+        BufferedImage loaded = decode(bmpFile);
+        return ImageDocument.open(loaded, TileHistograms.build(loaded, engine), historyBudgetBytes);
+    }
+
+    // Just the pixels: BmpCodec where it handles the variant, commons-imaging otherwise.
+    public static BufferedImage decode(File bmpFile) throws IOException {
+        BufferedImage loaded = BmpCodec.read(bmpFile);
+        if (loaded == null) {
+            try {
+                loaded = Imaging.getBufferedImage(bmpFile);
+            } catch (ImageReadException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (loaded == null) {
+            throw new IOException("Invalid BMP file.");
+        }
+        return loaded;
+    }
+
+    // Drops cached results of a document that is no longer open.
+    public void close(ImageDocument document) {
+        cache.invalidate(document.image());
+    }
+
+    // Runs pipeline on the document's loaded image.
+    public BufferedImage render(ImageDocument document, ImagePipeline pipeline, ProgressMonitor monitor) {
+        BufferedImage source = document.image();
+        if (!pipeline.hasPixelStages()) {
+            return pipeline.execute(source, engine);
+        }
+        BufferedImage cached = cache.get(source, "pipeline", pipeline);
+        if (cached != null) {
+            return cached;
+        }
+        return reuse(document, pipeline, monitor);
+    }
+
+    // The result of pipeline, which must not contain crops, for the document's working image,
+    // computed on a copy of it scaled to fit maxWidth x maxHeight. Meant as an instant stand-in
+    // while the full-resolution result is computed.
+    public BufferedImage proxy(ImageDocument document, ImagePipeline pipeline, int maxWidth, int maxHeight) {
+        BufferedImage proxy = engine.downsample(document.workingImage(), maxWidth, maxHeight);
+        return pipeline.execute(proxy, engine);
+    }
+
+    // Looks for the longest leading run of the pipeline's pixel stages whose full-image result
+    // is cached and can be cropped to the pipeline's crop. Either a slice of it is the answer
+    // (returned as a view, not cached), or the crop and the remaining stages run on it, which
+    // keeps the dither phase of the full image.
+    private BufferedImage reuse(ImageDocument document, ImagePipeline pipeline, ProgressMonitor monitor) {
+        BufferedImage source = document.image();
+        ImagePipeline.Crop crop = pipeline.leadingCrop();
+        if (crop != null || !pipeline.hasCrops()) {
+            int first = crop == null ? 0 : 1;
+            int end = pipeline.stages().size();
+            for (int split = end; split > first; split--) {
+                ImagePipeline done = pipeline.slice(first, split);
+                if (crop != null && !done.commutesWith(crop)) {
+                    continue;
+                }
+                BufferedImage full = cache.get(source, "pipeline", done);
+                if (full == null) {
+                    continue;
+                }
+                if (split == end) {
+                    return crop == null ? full : full.getSubimage(crop.x(), crop.y(), crop.width(), crop.height());
+                }
+                ImagePipeline rest = pipeline.without(first, split);
+                return cache.computeIfAbsent(source, "pipeline", pipeline,
+                        () -> rest.execute(full, engine, monitor));
+            }
+        }
+        // Any region of the loaded image is answered from its tile histograms.
+        TileHistograms tiles = document.histograms();
+        ImagePipeline.HistogramProvider known = (image, x, y, width, height) ->
+                tiles == null || tiles.image() != image ? null : tiles.histogram(x, y, width, height);
+        return cache.computeIfAbsent(source, "pipeline", pipeline,
+                () -> pipeline.execute(source, engine, known, monitor));
+    }
+}
@@ -0,0 +1,399 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// An immutable chain of operations that is only evaluated when executed. Crops are folded into
+// the region read from the source (getSubimage is a view), and the pixel stages are fused into one
+// row kernel, so any chain costs one read and one write of the output frame. Auto level needs the
+// histogram of its input, which costs one extra read-only pass over its (possibly larger) frame
+// unless a HistogramProvider already knows it.
+// Results are stored as compactly as their stages allow: TYPE_BYTE_GRAY once grayscale has run
+// and TYPE_BYTE_BINARY after dithering (auto level keeps both, as it maps gray to gray and
+// black/white to itself).
+// Error diffusion cannot be fused, as each pixel depends on its finished neighbours: the stages
+// before it run fused inside PixelEngine.diffuse and the stages after it run as a second pipeline.
+// Pipelines are value objects and are used as derived-image cache keys.
+public final class ImagePipeline {
+    public sealed interface Stage permits Crop, Grayscale, OrderedDither, ErrorDiffusionDither, AutoLevel {
+    }
+
+    public record Crop(int x, int y, int width, int height) implements Stage {
+    }
+
+    public record Grayscale() implements Stage {
+    }
+
+    // Thresholds the red channel against a size x size Bayer matrix; the builder always puts a
+    // Grayscale stage in front of it.
+    public record OrderedDither(int size) implements Stage {
+        public OrderedDither {
+            if (!Kernels.isDitherSize(size)) {
+                throw new IllegalArgumentException("Unsupported dither matrix size: " + size);
+            }
+        }
+
+        public OrderedDither() {
+            this(Kernels.DEFAULT_DITHER_SIZE);
+        }
+    }
+
+    // Dithers the red channel by error diffusion; also preceded by Grayscale.
+    public record ErrorDiffusionDither(ErrorDiffusion method) implements Stage {
+        public ErrorDiffusionDither {
+            Objects.requireNonNull(method);
+        }
+    }
+
+    // Stretches each channel between the given percentiles of its histogram; 0 and 100 stretch
+    // between the minimum and maximum.
+    public record AutoLevel(double lowPercent, double highPercent) implements Stage {
+        public AutoLevel {
+            if (lowPercent < 0 || highPercent > 100 || lowPercent >= highPercent) {
+                throw new IllegalArgumentException("Invalid auto level percentiles: " + lowPercent + ", " + highPercent);
+            }
+        }
+    }
+
+    // Supplies histograms that are already known for a region of the source, in source
+    // coordinates, so auto level can skip its statistics pass. Returns null when unknown.
+    @FunctionalInterface
+    public interface HistogramProvider {
+        HistogramProvider NONE = (source, x, y, width, height) -> null;
+
+        ImageHistogram find(BufferedImage source, int x, int y, int width, int height);
+    }
+
+    private static final ImagePipeline IDENTITY = new ImagePipeline(List.of());
+
+    private final List<Stage> stages;
+
+    private ImagePipeline(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    public static ImagePipeline identity() {
+        return IDENTITY;
+    }
+
+    public static ImagePipeline forState(ImageModel.ImageState state, Crop crop) {
+        return forState(state, crop, new AutoLevel(0, 100));
+    }
+
+    public static ImagePipeline forState(ImageModel.ImageState state, Crop crop, AutoLevel autoLevel) {
+        return forState(state, crop, autoLevel, DitherMode.ORDERED_4);
+    }
+
+    public static ImagePipeline forState(ImageModel.ImageState state, Crop crop, AutoLevel autoLevel,
+                                         DitherMode dither) {
+        ImagePipeline base = crop == null ? IDENTITY : IDENTITY.then(crop);
+        return switch (state) {
+            case ORIGINAL -> IDENTITY;
+            case CROPPED -> base;
+            case GRAYSCALE -> base.grayscale();
+            case ORDERED_DITHER -> dither.applyTo(base);
+            case AUTO_LEVEL -> base.then(autoLevel);
+        };
+    }
+
+    public ImagePipeline crop(int x, int y, int width, int height) {
+        return then(new Crop(x, y, width, height));
+    }
+
+    public ImagePipeline grayscale() {
+        return then(new Grayscale());
+    }
+
+    public ImagePipeline orderedDither() {
+        return orderedDither(Kernels.DEFAULT_DITHER_SIZE);
+    }
+
+    public ImagePipeline orderedDither(int size) {
+        return gray().then(new OrderedDither(size));
+    }
+
+    public ImagePipeline errorDiffusion(ErrorDiffusion method) {
+        return gray().then(new ErrorDiffusionDither(method));
+    }
+
+    private ImagePipeline gray() {
+        return lastPixelStage() instanceof Grayscale ? this : grayscale();
+    }
+
+    public ImagePipeline autoLevel() {
+        return autoLevel(0, 100);
+    }
+
+    public ImagePipeline autoLevel(double lowPercent, double highPercent) {
+        return then(new AutoLevel(lowPercent, highPercent));
+    }
+
+    private ImagePipeline then(Stage stage) {
+        List<Stage> next = new ArrayList<>(stages);
+        next.add(stage);
+        return new ImagePipeline(List.copyOf(next));
+    }
+
+    public List<Stage> stages() {
+        return stages;
+    }
+
+    // Crops do not change pixel values, so they are skipped.
+    private Stage lastPixelStage() {
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            if (!(stages.get(i) instanceof Crop)) {
+                return stages.get(i);
+            }
+        }
+        return null;
+    }
+
+    // Image type of execute results for the given source when the pipeline has pixel stages.
+    int outputType(BufferedImage source) {
+        int type = RowWriter.isCompact(source) ? source.getType() : BufferedImage.TYPE_INT_RGB;
+        for (Stage stage : stages) {
+            if (stage instanceof Grayscale) {
+                type = BufferedImage.TYPE_BYTE_GRAY;
+            } else if (stage instanceof OrderedDither || stage instanceof ErrorDiffusionDither) {
+                type = BufferedImage.TYPE_BYTE_BINARY;
+            }
+            // Crops and auto level keep the type.
+        }
+        return type;
+    }
+
+    // The crop this pipeline starts with when it has no other crops, otherwise null.
+    public Crop leadingCrop() {
+        if (stages.isEmpty() || !(stages.get(0) instanceof Crop crop)) {
+            return null;
+        }
+        return stages.stream().skip(1).anyMatch(stage -> stage instanceof Crop) ? null : crop;
+    }
+
+    public boolean hasCrops() {
+        return stages.stream().anyMatch(stage -> stage instanceof Crop);
+    }
+
+    // Stages [from, to) as a pipeline.
+    public ImagePipeline slice(int from, int to) {
+        return new ImagePipeline(List.copyOf(stages.subList(from, to)));
+    }
+
+    // Stages outside [from, to) as a pipeline.
+    public ImagePipeline without(int from, int to) {
+        List<Stage> rest = new ArrayList<>(stages.subList(0, from));
+        rest.addAll(stages.subList(to, stages.size()));
+        return new ImagePipeline(List.copyOf(rest));
+    }
+
+    // Whether cropping this pipeline's full-frame result to crop gives the same pixels as running
+    // the pipeline on the crop. True for grayscale, and for dithering since the matrix is anchored
+    // at the source's origin; auto level and error diffusion depend on everything above and left
+    // of a pixel.
+    public boolean commutesWith(Crop crop) {
+        for (Stage stage : stages) {
+            boolean commutes = switch (stage) {
+                case Grayscale grayscale -> true;
+                case OrderedDither dither -> true;
+                case ErrorDiffusionDither dither -> false;
+                case AutoLevel autoLevel -> false;
+                case Crop inner -> false;
+            };
+            if (!commutes) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasPixelStages() {
+        return stages.stream().anyMatch(stage -> !(stage instanceof Crop));
+    }
+
+    public BufferedImage execute(BufferedImage source, PixelEngine engine) {
+        return execute(source, engine, ProgressMonitor.NONE);
+    }
+
+    // Without pixel stages the result is a view of the source that shares its pixels.
+    public BufferedImage execute(BufferedImage source, PixelEngine engine, ProgressMonitor monitor) {
+        return execute(source, engine, HistogramProvider.NONE, monitor);
+    }
+
+    public BufferedImage execute(BufferedImage source, PixelEngine engine, HistogramProvider histograms,
+                                 ProgressMonitor monitor) {
+        int diffusion = indexOfDiffusion();
+        if (diffusion >= 0) {
+            // The stages after the diffusion get at most one more pass, for an auto level.
+            ImagePipeline before = slice(0, diffusion);
+            ImagePipeline after = slice(diffusion + 1, stages.size());
+            double split = after.hasPixelStages() ? 0.5 : 1;
+            Plan plan = before.new Plan(source);
+            ProgressMonitor first = monitor.slice(0, split);
+            int passes = plan.passes();
+            RowKernel kernel = plan.kernel(engine, histograms, first, passes);
+            ErrorDiffusion method = ((ErrorDiffusionDither) stages.get(diffusion)).method();
+            BufferedImage dithered = engine.diffuse(plan.view(plan.outputFrame), kernel, method,
+                    first.slice((double) (passes - 1) / passes, 1));
+            return after.execute(dithered, engine, HistogramProvider.NONE, monitor.slice(split, 1));
+        }
+        Plan plan = new Plan(source);
+        if (!hasPixelStages()) {
+            return plan.view(plan.outputFrame);
+        }
+        int passes = plan.passes();
+        RowKernel kernel = plan.kernel(engine, histograms, monitor, passes);
+        return engine.map(plan.view(plan.outputFrame), kernel, outputType(source),
+                monitor.slice((double) (passes - 1) / passes, 1));
+    }
+
+    private int indexOfDiffusion() {
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i) instanceof ErrorDiffusionDither) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ImagePipeline pipeline && stages.equals(pipeline.stages);
+    }
+
+    @Override
+    public int hashCode() {
+        return stages.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ImagePipeline" + stages;
+    }
+
+    private record Frame(int x, int y, int width, int height) {
+    }
+
+    // A pixel stage together with the source region it operates on.
+    private static final class Step {
+        final Stage stage;
+        final Frame frame;
+        RowKernel kernel;
+
+        Step(Stage stage, Frame frame) {
+            this.stage = stage;
+            this.frame = frame;
+        }
+
+        // Kernel for running this stage over rows of the given frame, which lies inside its own.
+        // The dither matrix is anchored at the source's origin, so a crop keeps the pattern of the
+        // full image.
+        RowKernel kernel(Frame target) {
+            return switch (stage) {
+                case Grayscale grayscale -> Kernels.grayscale();
+                case OrderedDither dither -> Kernels.orderedDither(dither.size(), target.x, target.y);
+                case ErrorDiffusionDither dither -> throw new IllegalStateException("Error diffusion has no kernel");
+                case AutoLevel autoLevel -> kernel;
+                case Crop crop -> throw new IllegalStateException("Crops have no kernel");
+            };
+        }
+    }
+
+    private final class Plan {
+        final BufferedImage source;
+        final List<Step> steps = new ArrayList<>();
+        final Frame outputFrame;
+
+        Plan(BufferedImage source) {
+            this.source = source;
+            Frame frame = new Frame(0, 0, source.getWidth(), source.getHeight());
+            for (Stage stage : stages) {
+                if (stage instanceof Crop crop) {
+                    if (crop.x() < 0 || crop.y() < 0 || crop.width() <= 0 || crop.height() <= 0
+                            || crop.x() + crop.width() > frame.width || crop.y() + crop.height() > frame.height) {
+                        throw new IllegalArgumentException("Crop area out of bounds: " + crop);
+                    }
+                    frame = new Frame(frame.x + crop.x(), frame.y + crop.y(), crop.width(), crop.height());
+                } else {
+                    steps.add(new Step(stage, frame));
+                }
+            }
+            outputFrame = frame;
+        }
+
+        // One pass for the fused kernel plus one statistics pass per auto level.
+        int passes() {
+            return 1 + (int) steps.stream().filter(step -> step.stage instanceof AutoLevel).count();
+        }
+
+        // The fused kernel of all steps over the output frame. Histograms for auto level are
+        // computed first, each in its own 1 / passes of the monitor's range.
+        RowKernel kernel(PixelEngine engine, HistogramProvider histograms, ProgressMonitor monitor, int passes) {
+            List<RowKernel> kernels = new ArrayList<>();
+            int pass = 0;
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                if (step.stage instanceof AutoLevel autoLevel) {
+                    ImageHistogram histogram = histogram(i, engine, histograms, monitor.slice(
+                            (double) pass / passes, (double) (pass + 1) / passes));
+                    pass++;
+                    step.kernel = Kernels.autoLevel(histogram.lowerBound(autoLevel.lowPercent()),
+                            histogram.upperBound(autoLevel.highPercent()));
+                }
+                kernels.add(step.kernel(outputFrame));
+            }
+            return Kernels.fuse(kernels);
+        }
+
+        BufferedImage view(Frame frame) {
+            if (frame.x == 0 && frame.y == 0 && frame.width == source.getWidth() && frame.height == source.getHeight()) {
+                return source;
+            }
+            return source.getSubimage(frame.x, frame.y, frame.width, frame.height);
+        }
+
+        // Histogram of the input of step index, i.e. the source over that step's frame run
+        // through all earlier stages.
+        ImageHistogram histogram(int index, PixelEngine engine, HistogramProvider histograms, ProgressMonitor monitor) {
+            Frame frame = steps.get(index).frame;
+            List<RowKernel> prefix = new ArrayList<>();
+            for (int i = 0; i < index; i++) {
+                prefix.add(steps.get(i).kernel(frame));
+            }
+            BufferedImage region = view(frame);
+            if (prefix.isEmpty()) {
+                ImageHistogram known = histograms.find(source, frame.x, frame.y, frame.width, frame.height);
+                if (known != null) {
+                    return known;
+                }
+                return engine.reduce(region, ImageHistogram::new, ImageHistogram::merge, monitor);
+            }
+            RowKernel kernel = Kernels.fuse(prefix);
+            return engine.reduce(region, () -> new TransformedHistogram(kernel, frame.width),
+                    TransformedHistogram::merge, monitor).histogram;
+        }
+    }
+
+    // Collects the histogram of rows after running them through a kernel.
+    private static final class TransformedHistogram implements PixelEngine.RowVisitor {
+        final RowKernel kernel;
+        final int[] row;
+        final ImageHistogram histogram = new ImageHistogram();
+
+        TransformedHistogram(RowKernel kernel, int width) {
+            this.kernel = kernel;
+            this.row = new int[width];
+        }
+
+        @Override
+        public void visit(int[] src, int srcOffset, int width, int y) {
+            kernel.apply(src, srcOffset, row, 0, width, y);
+            histogram.visit(row, 0, width, y);
+        }
+
+        TransformedHistogram merge(TransformedHistogram other) {
+            histogram.merge(other.histogram);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.example.Model;
+import java.util.List;
+
+public final class Kernels {
+    public static final int DEFAULT_DITHER_SIZE = 4;
+    private static final int MAX_DITHER_SIZE = 16;
+    // BAYER[k] is the 2^k x 2^k matrix; BAYER[2] is the classic 4x4 one
+    private static final int[][][] BAYER = bayerMatrices(MAX_DITHER_SIZE);
+    private static final int RED = 0;
+    private static final int GREEN = 1;
+    private static final int BLUE = 2;
+
+    // The SIMD kernels are used when they were built (-Pvector) and jdk.incubator.vector is
+    // resolved (--add-modules jdk.incubator.vector), unless -Dminiphotoshop.vector=false;
+    // otherwise the scalar ones.
+    private static final SimdKernels SIMD = loadSimd();
+
+    private Kernels() {
+    }
+
+    // Loaded by name so that the default build compiles without the incubator module.
+    private static SimdKernels loadSimd() {
+        if ("false".equals(System.getProperty("miniphotoshop.vector"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return Class.forName("org.example.Model.VectorKernels").asSubclass(SimdKernels.class)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public static boolean isVectorized() {
+        return SIMD != null;
+    }
+
+    // The SIMD kernels in use, or null if the scalar ones are.
+    public static SimdKernels simd() {
+        return SIMD;
+    }
+
+    public static RowKernel grayscale() {
+        return SIMD != null ? SIMD.grayscale() : scalarGrayscale();
+    }
+
+    public static RowKernel scalarGrayscale() {
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            for (int x = 0; x < width; x++) {
+                int rgb = src[srcOffset + x];
+                int red = (int) (((rgb >> 16) & 0xFF) * 0.299);
+                int green = (int) (((rgb >> 8) & 0xFF) * 0.587);
+                int blue = (int) ((rgb & 0xFF) * 0.114);
+                int gray = red + green + blue;
+                dst[dstOffset + x] = gray << 16 | gray << 8 | gray;
+            }
+        };
+    }
+
+    public static RowKernel identity() {
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            for (int x = 0; x < width; x++) {
+                dst[dstOffset + x] = src[srcOffset + x] & 0xFFFFFF;
+            }
+        };
+    }
+
+    // Dither matrix sizes supported by orderedDither: the powers of two up to 16.
+    public static boolean isDitherSize(int size) {
+        return size >= 2 && size <= MAX_DITHER_SIZE && Integer.bitCount(size) == 1;
+    }
+
+    // Recursive Bayer construction: M(2n)[i][j] = 4 M(n)[i mod n][j mod n] + M(2)[i / n][j / n].
+    private static int[][][] bayerMatrices(int maxSize) {
+        int levels = Integer.numberOfTrailingZeros(maxSize);
+        int[][][] matrices = new int[levels + 1][][];
+        matrices[0] = new int[][]{{0}};
+        int[][] base = {{0, 2}, {3, 1}};
+        for (int k = 1; k <= levels; k++) {
+            int half = 1 << (k - 1);
+            int size = half * 2;
+            int[][] previous = matrices[k - 1];
+            int[][] matrix = new int[size][size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    matrix[i][j] = 4 * previous[i % half][j % half] + base[i / half][j / half];
+                }
+            }
+            matrices[k] = matrix;
+        }
+        return matrices;
+    }
+
+    static int[][] bayerMatrix(int size) {
+        if (!isDitherSize(size)) {
+            throw new IllegalArgumentException("Unsupported dither matrix size: " + size);
+        }
+        return BAYER[Integer.numberOfTrailingZeros(size)];
+    }
+
+    // Expects a grayscale source and thresholds its red channel against the 4x4 Bayer matrix.
+    public static RowKernel orderedDither() {
+        return orderedDither(0, 0);
+    }
+
+    public static RowKernel orderedDither(int phaseX, int phaseY) {
+        return orderedDither(DEFAULT_DITHER_SIZE, phaseX, phaseY);
+    }
+
+    // Thresholds against the size x size Bayer matrix. The phase is the position of the kernel's
+    // (0, 0) in the frame the matrix is anchored to, so a crop of a dithered image can be
+    // dithered directly with the same pattern.
+    public static RowKernel orderedDither(int size, int phaseX, int phaseY) {
+        int[][] matrix = bayerMatrix(size);
+        if (SIMD != null && SIMD.supportsMatrixSize(size)) {
+            return SIMD.orderedDither(matrix, phaseX, phaseY);
+        }
+        return scalarOrderedDither(matrix, phaseX, phaseY);
+    }
+
+    public static RowKernel scalarOrderedDither(int phaseX, int phaseY) {
+        return scalarOrderedDither(bayerMatrix(DEFAULT_DITHER_SIZE), phaseX, phaseY);
+    }
+
+    private static RowKernel scalarOrderedDither(int[][] matrix, int phaseX, int phaseY) {
+        int matrixSize = matrix.length;
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            int j = (y + phaseY) % matrixSize;
+            for (int x = 0; x < width; x++) {
+                int input = (src[srcOffset + x] >> 16) & 0xFF;
+                int scaledInput = input * matrixSize * matrixSize / 256;
+                int dither = matrix[(x + phaseX) % matrixSize][j];
+                dst[dstOffset + x] = (scaledInput > dither) ? 0xFFFFFF : 0;
+            }
+        };
+    }
+
+    // Stretches each channel from [min, max] to [0, 255] through a precomputed lookup table.
+    public static RowKernel autoLevel(int[] minRGB, int[] maxRGB) {
+        int[] red = new int[256];
+        int[] green = new int[256];
+        int[] blue = new int[256];
+        for (int value = 0; value < 256; value++) {
+            red[value] = stretch(value, minRGB[RED], maxRGB[RED]);
+            green[value] = stretch(value, minRGB[GREEN], maxRGB[GREEN]);
+            blue[value] = stretch(value, minRGB[BLUE], maxRGB[BLUE]);
+        }
+        return lookup(red, green, blue);
+    }
+
+    public static RowKernel lookup(int[] red, int[] green, int[] blue) {
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            for (int x = 0; x < width; x++) {
+                int rgb = src[srcOffset + x];
+                dst[dstOffset + x] = red[(rgb >> 16) & 0xFF] << 16 | green[(rgb >> 8) & 0xFF] << 8 | blue[rgb & 0xFF];
+            }
+        };
+    }
+
+    // Runs the kernels back to back over each row: the first reads the source, the rest work
+    // in place on the destination, so no intermediate frame or row buffer is needed.
+    public static RowKernel fuse(List<RowKernel> kernels) {
+        if (kernels.isEmpty()) {
+            return identity();
+        }
+        if (kernels.size() == 1) {
+            return kernels.get(0);
+        }
+        RowKernel[] stages = kernels.toArray(new RowKernel[0]);
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            stages[0].apply(src, srcOffset, dst, dstOffset, width, y);
+            for (int i = 1; i < stages.length; i++) {
+                stages[i].apply(dst, dstOffset, dst, dstOffset, width, y);
+            }
+        };
+    }
+
+    static int stretch(int value, int min, int max) {
+        if (max == min) {
+            return value; // Avoid division by zero if all values are the same
+        }
+        return Math.min(255, Math.max(0, (value - min) * 255 / (max - min)));
+    }
+}
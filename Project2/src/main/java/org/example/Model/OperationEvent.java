@@ -0,0 +1,34 @@
+package org.example.Model;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight Recorder event for one image operation; the duration is the event's own.
+@Name("org.example.ImageOperation")
+@Label("Image Operation")
+@Category({"Mini Photoshop"})
+@Description("Load, filter, crop or export of an image")
+class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Pixels")
+    long pixels;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the calling thread, or -1 if unknown (always on virtual threads)")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -0,0 +1,119 @@
+package org.example.Model;
+import java.util.Arrays;
+
+// Counters for one operation plus a ring of the most recent durations, from which the
+// percentiles are computed on demand.
+public class OperationStats implements OperationStatsMBean {
+    static final int WINDOW = 1024;
+
+    private final String operation;
+    private final long[] recentNanos = new long[WINDOW];
+    private int recentCount;
+    private int next;
+    private long count;
+    private long failures;
+    private long pixels;
+    private long allocatedBytes;
+    private long allocationSamples;
+    private long totalNanos;
+    private long maxNanos;
+
+    OperationStats(String operation) {
+        this.operation = operation;
+    }
+
+    synchronized void record(long nanos, long pixelCount, long allocated, boolean succeeded) {
+        count++;
+        if (!succeeded) {
+            failures++;
+        }
+        pixels += pixelCount;
+        if (allocated >= 0) {
+            allocatedBytes += allocated;
+            allocationSamples++;
+        }
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        recentNanos[next] = nanos;
+        next = (next + 1) % WINDOW;
+        recentCount = Math.min(WINDOW, recentCount + 1);
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public synchronized long getPixels() {
+        return pixels;
+    }
+
+    @Override
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public synchronized long getAllocationSamples() {
+        return allocationSamples;
+    }
+
+    @Override
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    @Override
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(50);
+    }
+
+    @Override
+    public double getP90Millis() {
+        return percentileMillis(90);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(99);
+    }
+
+    public synchronized double percentileMillis(double percent) {
+        if (recentCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(recentNanos, recentCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100 * recentCount) - 1;
+        return sorted[Math.max(0, Math.min(recentCount - 1, index))] / 1e6;
+    }
+
+    @Override
+    public synchronized void reset() {
+        recentCount = 0;
+        next = 0;
+        count = 0;
+        failures = 0;
+        pixels = 0;
+        allocatedBytes = 0;
+        allocationSamples = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+}
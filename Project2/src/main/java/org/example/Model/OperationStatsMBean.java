@@ -0,0 +1,30 @@
+package org.example.Model;
+
+public interface OperationStatsMBean {
+    String getOperation();
+
+    long getCount();
+
+    long getFailures();
+
+    long getPixels();
+
+    // Bytes allocated by the operations whose allocation was measured, which excludes those run
+    // on virtual threads; getAllocationSamples() is how many there were.
+    long getAllocatedBytes();
+
+    long getAllocationSamples();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    // Percentiles over the most recent samples.
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    void reset();
+}
@@ -0,0 +1,426 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+// Runs row kernels over an image, split into horizontal bands of tileHeight rows.
+// With a parallelism above 1 the bands are executed on a dedicated fork-join pool;
+// kernels only depend on (x, y) so the result is identical to the sequential path.
+public class PixelEngine {
+    public static final int DEFAULT_TILE_HEIGHT = 64;
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(int[] src, int srcOffset, int width, int y);
+    }
+
+    private int parallelism;
+    private int tileHeight;
+    private ForkJoinPool pool;
+
+    public PixelEngine() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TILE_HEIGHT);
+    }
+
+    public PixelEngine(int parallelism, int tileHeight) {
+        setParallelism(parallelism);
+        setTileHeight(tileHeight);
+    }
+
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setTileHeight(int tileHeight) {
+        if (tileHeight < 1) {
+            throw new IllegalArgumentException("Tile height must be at least 1: " + tileHeight);
+        }
+        this.tileHeight = tileHeight;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public BufferedImage map(BufferedImage source, RowKernel kernel) {
+        return map(source, kernel, ProgressMonitor.NONE);
+    }
+
+    // The monitor is checked before every band; cancellation surfaces as a CancellationException.
+    public BufferedImage map(BufferedImage source, RowKernel kernel, ProgressMonitor monitor) {
+        return map(source, kernel, BufferedImage.TYPE_INT_RGB, monitor);
+    }
+
+    // imageType is TYPE_INT_RGB, TYPE_BYTE_GRAY or TYPE_BYTE_BINARY; for the compact types the
+    // kernel output must already be gray, or black and white.
+    public BufferedImage map(BufferedImage source, RowKernel kernel, int imageType, ProgressMonitor monitor) {
+        if (!RowWriter.supports(imageType)) {
+            throw new IllegalArgumentException("Unsupported output image type: " + imageType);
+        }
+        int height = source.getHeight();
+        BufferedImage result = new BufferedImage(source.getWidth(), height, imageType);
+
+        Progress progress = new Progress(monitor, height);
+        int bands = bandCount(height);
+        if (parallelism == 1) {
+            for (int band = 0; band < bands; band++) {
+                mapBand(source, kernel, result, band, progress);
+            }
+        } else {
+            pool().invoke(new MapTask(source, kernel, result, 0, bands, progress));
+        }
+        return result;
+    }
+
+    // Nearest-neighbour copy scaled to fit within maxWidth x maxHeight (never enlarged); reads
+    // only the sampled rows, so it costs about the size of the result.
+    public BufferedImage downsample(BufferedImage source, int maxWidth, int maxHeight) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1, Math.min((double) maxWidth / width, (double) maxHeight / height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        int type = RowWriter.isCompact(source) ? source.getType() : BufferedImage.TYPE_INT_RGB;
+        BufferedImage result = new BufferedImage(targetWidth, targetHeight, type);
+        RowReader reader = RowReader.of(source);
+        RowWriter writer = RowWriter.of(result);
+        int[] columns = new int[targetWidth];
+        for (int x = 0; x < targetWidth; x++) {
+            columns[x] = (int) ((x + 0.5) * width / targetWidth);
+        }
+        for (int y = 0; y < targetHeight; y++) {
+            int srcOffset = reader.load((int) ((y + 0.5) * height / targetHeight));
+            int[] src = reader.data();
+            int[] dst = writer.data();
+            int dstOffset = writer.offset(y);
+            for (int x = 0; x < targetWidth; x++) {
+                dst[dstOffset + x] = src[srcOffset + columns[x]] & 0xFFFFFF;
+            }
+            writer.store(y);
+        }
+        return result;
+    }
+
+    // Error diffusion dithering of the red channel of prefix's output into a new TYPE_BYTE_BINARY
+    // image. A pixel needs the final error of the pixels above it, so rows run as a wavefront:
+    // workers take rows in order and each one stays a chunk behind the row above. The result is
+    // identical to the sequential path for any parallelism.
+    public BufferedImage diffuse(BufferedImage source, RowKernel prefix, ErrorDiffusion method,
+                                 ProgressMonitor monitor) {
+        int height = source.getHeight();
+        BufferedImage result = new BufferedImage(source.getWidth(), height, BufferedImage.TYPE_BYTE_BINARY);
+        int workers = Math.min(parallelism, height);
+        Wavefront wavefront = new Wavefront(source, prefix, method, result, workers, new Progress(monitor, height));
+        if (workers == 1) {
+            wavefront.run();
+        } else {
+            pool().invoke(new WavefrontTask(wavefront, workers));
+        }
+        wavefront.rethrow();
+        return result;
+    }
+
+    public <V extends RowVisitor> V reduce(BufferedImage source, Supplier<V> factory, BinaryOperator<V> combiner) {
+        return reduce(source, factory, combiner, ProgressMonitor.NONE);
+    }
+
+    public <V extends RowVisitor> V reduce(BufferedImage source, Supplier<V> factory, BinaryOperator<V> combiner,
+                                           ProgressMonitor monitor) {
+        int height = source.getHeight();
+        Progress progress = new Progress(monitor, height);
+        int bands = bandCount(height);
+        if (parallelism == 1) {
+            V visitor = factory.get();
+            for (int band = 0; band < bands; band++) {
+                scanBand(source, visitor, band, progress);
+            }
+            return visitor;
+        }
+        return pool().invoke(new ReduceTask<>(source, factory, combiner, 0, bands, progress));
+    }
+
+    private int bandCount(int height) {
+        return Math.max(1, (height + tileHeight - 1) / tileHeight);
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    private void mapBand(BufferedImage source, RowKernel kernel, BufferedImage result, int band, Progress progress) {
+        progress.checkCancelled();
+        int width = source.getWidth();
+        int fromY = band * tileHeight;
+        int toY = Math.min(source.getHeight(), fromY + tileHeight);
+        RowReader reader = RowReader.of(source);
+        RowWriter writer = RowWriter.of(result);
+        for (int y = fromY; y < toY; y++) {
+            int srcOffset = reader.load(y);
+            kernel.apply(reader.data(), srcOffset, writer.data(), writer.offset(y), width, y);
+            writer.store(y);
+        }
+        progress.bandDone(result, fromY, toY);
+        progress.rowsDone(toY - fromY);
+    }
+
+    private void scanBand(BufferedImage source, RowVisitor visitor, int band, Progress progress) {
+        progress.checkCancelled();
+        int width = source.getWidth();
+        int fromY = band * tileHeight;
+        int toY = Math.min(source.getHeight(), fromY + tileHeight);
+        RowReader reader = RowReader.of(source);
+        for (int y = fromY; y < toY; y++) {
+            int srcOffset = reader.load(y);
+            visitor.visit(reader.data(), srcOffset, width, y);
+        }
+        progress.rowsDone(toY - fromY);
+    }
+
+    private static final class Progress {
+        private final ProgressMonitor monitor;
+        private final int totalRows;
+        private final AtomicInteger completedRows = new AtomicInteger();
+
+        Progress(ProgressMonitor monitor, int totalRows) {
+            this.monitor = monitor;
+            this.totalRows = totalRows;
+        }
+
+        void checkCancelled() {
+            monitor.checkCancelled();
+        }
+
+        void bandDone(BufferedImage result, int fromY, int toY) {
+            if (monitor != ProgressMonitor.NONE) {
+                monitor.bandCompleted(result, fromY, toY);
+            }
+        }
+
+        void rowsDone(int rows) {
+            if (monitor != ProgressMonitor.NONE) {
+                monitor.worked((double) completedRows.addAndGet(rows) / totalRows);
+            }
+        }
+    }
+
+    private final class MapTask extends RecursiveAction {
+        private final BufferedImage source;
+        private final RowKernel kernel;
+        private final BufferedImage result;
+        private final int fromBand;
+        private final int toBand;
+        private final Progress progress;
+
+        MapTask(BufferedImage source, RowKernel kernel, BufferedImage result, int fromBand, int toBand,
+                Progress progress) {
+            this.source = source;
+            this.kernel = kernel;
+            this.result = result;
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBand - fromBand == 1) {
+                mapBand(source, kernel, result, fromBand, progress);
+                return;
+            }
+            int middle = (fromBand + toBand) >>> 1;
+            invokeAll(new MapTask(source, kernel, result, fromBand, middle, progress),
+                    new MapTask(source, kernel, result, middle, toBand, progress));
+        }
+    }
+
+    private final class ReduceTask<V extends RowVisitor> extends RecursiveTask<V> {
+        private final BufferedImage source;
+        private final Supplier<V> factory;
+        private final BinaryOperator<V> combiner;
+        private final int fromBand;
+        private final int toBand;
+        private final Progress progress;
+
+        ReduceTask(BufferedImage source, Supplier<V> factory, BinaryOperator<V> combiner, int fromBand, int toBand,
+                   Progress progress) {
+            this.source = source;
+            this.factory = factory;
+            this.combiner = combiner;
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+            this.progress = progress;
+        }
+
+        @Override
+        protected V compute() {
+            if (toBand - fromBand == 1) {
+                V visitor = factory.get();
+                scanBand(source, visitor, fromBand, progress);
+                return visitor;
+            }
+            int middle = (fromBand + toBand) >>> 1;
+            ReduceTask<V> upper = new ReduceTask<>(source, factory, combiner, fromBand, middle, progress);
+            ReduceTask<V> lower = new ReduceTask<>(source, factory, combiner, middle, toBand, progress);
+            upper.fork();
+            V lowerResult = lower.compute();
+            return combiner.apply(upper.join(), lowerResult);
+        }
+    }
+
+    // Shared state of one diffuse call. Error pushed to the rows below is accumulated in a ring
+    // of int rows, one per row in flight plus the rows it reaches; error along the current row
+    // stays in the worker's own line so the row above, which writes just ahead of it, never
+    // races with it. Rows publish how far they got after every chunk.
+    private final class Wavefront {
+        private static final int CHUNK = 64;
+        private static final int SPINS = 100;
+
+        private final BufferedImage source;
+        private final RowKernel prefix;
+        private final ErrorDiffusion method;
+        private final BufferedImage result;
+        private final Progress progress;
+        private final int width;
+        private final int height;
+        private final int[][] errors;
+        private final AtomicInteger nextRow = new AtomicInteger();
+        private final AtomicIntegerArray done;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Wavefront(BufferedImage source, RowKernel prefix, ErrorDiffusion method, BufferedImage result, int workers,
+                  Progress progress) {
+            this.source = source;
+            this.prefix = prefix;
+            this.method = method;
+            this.result = result;
+            this.progress = progress;
+            this.width = source.getWidth();
+            this.height = source.getHeight();
+            this.errors = new int[workers + method.rowsBelow + 1][width + 2 * method.reach];
+            this.done = new AtomicIntegerArray(height);
+        }
+
+        void run() {
+            RowReader reader = RowReader.of(source);
+            RowWriter writer = RowWriter.of(result);
+            int[] gray = new int[width];
+            int[] line = new int[width + 2 * method.reach];
+            try {
+                for (int y = nextRow.getAndIncrement(); y < height; y = nextRow.getAndIncrement()) {
+                    progress.checkCancelled();
+                    int srcOffset = reader.load(y);
+                    prefix.apply(reader.data(), srcOffset, gray, 0, width, y);
+                    Arrays.fill(line, 0);
+                    if (!diffuseRow(y, gray, line, writer.data())) {
+                        return;
+                    }
+                    writer.store(y);
+                    done.setRelease(y, width);
+                    if ((y + 1) % tileHeight == 0 || y == height - 1) {
+                        int fromY = y - y % tileHeight;
+                        progress.bandDone(result, fromY, y + 1);
+                        progress.rowsDone(y + 1 - fromY);
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        // False when another worker failed while this one was waiting.
+        private boolean diffuseRow(int y, int[] gray, int[] line, int[] out) {
+            int reach = method.reach;
+            int divisor = method.divisor;
+            int targets = method.weight.length;
+            int[] own = errors[y % errors.length];
+            for (int from = 0; from < width; from += CHUNK) {
+                int to = Math.min(width, from + CHUNK);
+                if (y > 0 && !await(y - 1, Math.min(width, to + method.lag))) {
+                    return false;
+                }
+                for (int x = from; x < to; x++) {
+                    int incoming = own[x + reach] + line[x + reach];
+                    int value = ((gray[x] >> 16) & 0xFF) + Math.floorDiv(incoming + divisor / 2, divisor);
+                    int level = value >= 128 ? 255 : 0;
+                    out[x] = level == 255 ? 0xFFFFFF : 0;
+                    int error = value - level;
+                    for (int t = 0; t < targets; t++) {
+                        int[] target = method.dy[t] == 0 ? line : errors[(y + method.dy[t]) % errors.length];
+                        target[x + method.dx[t] + reach] += error * method.weight[t];
+                    }
+                }
+                if (to < width) {
+                    done.setRelease(y, to);
+                }
+            }
+            // All rows writing into this slot have finished, so it can be reused.
+            Arrays.fill(own, 0);
+            return true;
+        }
+
+        private boolean await(int row, int pixels) {
+            int spins = 0;
+            while (done.getAcquire(row) < pixels) {
+                if (failure.get() != null) {
+                    return false;
+                }
+                if (++spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return true;
+        }
+
+        void rethrow() {
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    // Starts the given number of wavefront workers; rows are claimed as workers start, so workers
+    // that a busy pool runs late or one after another still finish.
+    private static final class WavefrontTask extends RecursiveAction {
+        private final Wavefront wavefront;
+        private final int workers;
+
+        WavefrontTask(Wavefront wavefront, int workers) {
+            this.wavefront = wavefront;
+            this.workers = workers;
+        }
+
+        @Override
+        protected void compute() {
+            if (workers == 1) {
+                wavefront.run();
+                return;
+            }
+            int half = workers / 2;
+            invokeAll(new WavefrontTask(wavefront, half), new WavefrontTask(wavefront, workers - half));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+
+// Passed into long-running model operations so callers can observe progress and cancel them.
+public interface ProgressMonitor {
+    ProgressMonitor NONE = new ProgressMonitor() {
+        @Override
+        public void worked(double fraction) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    // fraction of this monitor's work that is complete, between 0 and 1
+    void worked(double fraction);
+
+    boolean isCancelled();
+
+    // Called by PixelEngine.map when rows [fromY, toY) of the image it is filling are final, so a
+    // partial result can be shown. Bands complete out of order and on pool threads.
+    default void bandCompleted(BufferedImage image, int fromY, int toY) {
+    }
+
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Operation cancelled");
+        }
+    }
+
+    // Maps this monitor's [0, 1] range onto [from, to] of the parent, for multi-pass operations.
+    default ProgressMonitor slice(double from, double to) {
+        ProgressMonitor parent = this;
+        return new ProgressMonitor() {
+            @Override
+            public void worked(double fraction) {
+                parent.worked(from + (to - from) * fraction);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return parent.isCancelled();
+            }
+
+            @Override
+            public void bandCompleted(BufferedImage image, int fromY, int toY) {
+                parent.bandCompleted(image, fromY, toY);
+            }
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package org.example.Model;
+
+@FunctionalInterface
+public interface RowKernel {
+    // src holds 0xAARRGGBB pixels (alpha is ignored), dst receives 0x00RRGGBB pixels.
+    // Kernels are pointwise: each output pixel depends only on the input pixel at the same index
+    // and its position, so src and dst may be the same array at the same offset.
+    void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int width, int y);
+}
@@ -0,0 +1,214 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+// Gives row-wise access to packed 0xAARRGGBB pixels without going through getRGB per pixel.
+// Int-packed images are read in place; everything else is unpacked into a reusable row buffer.
+// TYPE_BYTE_GRAY samples are taken as sRGB gray levels, the way Java2D draws them; getRGB would
+// treat them as linear and brighten them.
+abstract class RowReader {
+    protected final int width;
+
+    private RowReader(int width) {
+        this.width = width;
+    }
+
+    abstract int[] data();
+
+    abstract int load(int y);
+
+    static RowReader of(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && sampleModel instanceof SinglePixelPackedSampleModel packed
+                && raster.getDataBuffer() instanceof DataBufferInt buffer) {
+            return new IntRowReader(image.getWidth(), buffer, packed, raster);
+        }
+        if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && sampleModel instanceof ComponentSampleModel component
+                && raster.getDataBuffer() instanceof DataBufferByte buffer) {
+            return new ByteRowReader(image.getWidth(), buffer, component, raster);
+        }
+        if (type == BufferedImage.TYPE_BYTE_GRAY
+                && sampleModel instanceof ComponentSampleModel component
+                && raster.getDataBuffer() instanceof DataBufferByte buffer) {
+            return new GrayRowReader(image.getWidth(), buffer, component, raster);
+        }
+        if (type == BufferedImage.TYPE_BYTE_BINARY
+                && sampleModel instanceof MultiPixelPackedSampleModel packed && packed.getPixelBitStride() == 1
+                && image.getColorModel() instanceof IndexColorModel colors
+                && raster.getDataBuffer() instanceof DataBufferByte buffer) {
+            return new BinaryRowReader(image.getWidth(), buffer, packed, colors, raster);
+        }
+        return new GenericRowReader(image);
+    }
+
+    private static final class IntRowReader extends RowReader {
+        private final int[] data;
+        private final int base;
+        private final int stride;
+
+        IntRowReader(int width, DataBufferInt buffer, SinglePixelPackedSampleModel sampleModel, WritableRaster raster) {
+            super(width);
+            this.data = buffer.getData();
+            this.stride = sampleModel.getScanlineStride();
+            this.base = buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX();
+        }
+
+        @Override
+        int[] data() {
+            return data;
+        }
+
+        @Override
+        int load(int y) {
+            return base + y * stride;
+        }
+    }
+
+    private static final class ByteRowReader extends RowReader {
+        private final byte[] data;
+        private final int[] row;
+        private final int base;
+        private final int stride;
+        private final int pixelStride;
+        private final int redOffset;
+        private final int greenOffset;
+        private final int blueOffset;
+
+        ByteRowReader(int width, DataBufferByte buffer, ComponentSampleModel sampleModel, WritableRaster raster) {
+            super(width);
+            this.data = buffer.getData();
+            this.row = new int[width];
+            this.stride = sampleModel.getScanlineStride();
+            this.pixelStride = sampleModel.getPixelStride();
+            int[] bandOffsets = sampleModel.getBandOffsets();
+            this.redOffset = bandOffsets[0];
+            this.greenOffset = bandOffsets[1];
+            this.blueOffset = bandOffsets[2];
+            this.base = buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * pixelStride;
+        }
+
+        @Override
+        int[] data() {
+            return row;
+        }
+
+        @Override
+        int load(int y) {
+            int index = base + y * stride;
+            for (int x = 0; x < width; x++, index += pixelStride) {
+                row[x] = 0xFF000000
+                        | (data[index + redOffset] & 0xFF) << 16
+                        | (data[index + greenOffset] & 0xFF) << 8
+                        | (data[index + blueOffset] & 0xFF);
+            }
+            return 0;
+        }
+    }
+
+    private static final class GrayRowReader extends RowReader {
+        private final byte[] data;
+        private final int[] row;
+        private final int base;
+        private final int stride;
+        private final int pixelStride;
+
+        GrayRowReader(int width, DataBufferByte buffer, ComponentSampleModel sampleModel, WritableRaster raster) {
+            super(width);
+            this.data = buffer.getData();
+            this.row = new int[width];
+            this.stride = sampleModel.getScanlineStride();
+            this.pixelStride = sampleModel.getPixelStride();
+            this.base = buffer.getOffset() + sampleModel.getBandOffsets()[0]
+                    - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * pixelStride;
+        }
+
+        @Override
+        int[] data() {
+            return row;
+        }
+
+        @Override
+        int load(int y) {
+            int index = base + y * stride;
+            for (int x = 0; x < width; x++, index += pixelStride) {
+                row[x] = 0xFF000000 | (data[index] & 0xFF) * 0x010101;
+            }
+            return 0;
+        }
+    }
+
+    private static final class BinaryRowReader extends RowReader {
+        private final byte[] data;
+        private final int[] row;
+        private final int[] colors = new int[2];
+        private final int stride;
+        private final int rowBase;
+        private final int bitBase;
+
+        BinaryRowReader(int width, DataBufferByte buffer, MultiPixelPackedSampleModel sampleModel,
+                        IndexColorModel colorModel, WritableRaster raster) {
+            super(width);
+            this.data = buffer.getData();
+            this.row = new int[width];
+            this.stride = sampleModel.getScanlineStride();
+            for (int i = 0; i < Math.min(2, colorModel.getMapSize()); i++) {
+                colors[i] = 0xFF000000 | colorModel.getRGB(i);
+            }
+            this.rowBase = buffer.getOffset() - raster.getSampleModelTranslateY() * stride;
+            this.bitBase = sampleModel.getDataBitOffset() - raster.getSampleModelTranslateX();
+        }
+
+        @Override
+        int[] data() {
+            return row;
+        }
+
+        @Override
+        int load(int y) {
+            int index = rowBase + y * stride;
+            for (int x = 0; x < width; x++) {
+                int bit = bitBase + x;
+                row[x] = colors[(data[index + (bit >> 3)] >> (7 - (bit & 7))) & 1];
+            }
+            return 0;
+        }
+    }
+
+    private static final class GenericRowReader extends RowReader {
+        private final BufferedImage image;
+        private final int[] row;
+
+        GenericRowReader(BufferedImage image) {
+            super(image.getWidth());
+            this.image = image;
+            this.row = new int[width];
+        }
+
+        @Override
+        int[] data() {
+            return row;
+        }
+
+        @Override
+        int load(int y) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            return 0;
+        }
+    }
+}
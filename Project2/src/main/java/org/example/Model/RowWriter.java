@@ -0,0 +1,138 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+
+// Counterpart of RowReader for engine output: kernels always produce 0x00RRGGBB rows, which are
+// written in place for TYPE_INT_RGB and packed from a row buffer into TYPE_BYTE_GRAY (blue
+// channel) and TYPE_BYTE_BINARY (blue channel >= 128 is white). Writers only touch their own
+// rows, so one writer per band can run concurrently.
+abstract class RowWriter {
+    protected final int width;
+
+    private RowWriter(int width) {
+        this.width = width;
+    }
+
+    abstract int[] data();
+
+    // Offset in data() where row y is to be produced.
+    abstract int offset(int y);
+
+    abstract void store(int y);
+
+    static boolean supports(int imageType) {
+        return imageType == BufferedImage.TYPE_INT_RGB || imageType == BufferedImage.TYPE_BYTE_GRAY
+                || imageType == BufferedImage.TYPE_BYTE_BINARY;
+    }
+
+    // True for gray and black-and-white images of the kind this class writes, whose pixels can
+    // be stored as they are in 8-bit or 1-bit form.
+    static boolean isCompact(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return true;
+        }
+        return image.getType() == BufferedImage.TYPE_BYTE_BINARY
+                && image.getColorModel() instanceof IndexColorModel colors && colors.getMapSize() == 2
+                && (colors.getRGB(0) & 0xFFFFFF) == 0 && (colors.getRGB(1) & 0xFFFFFF) == 0xFFFFFF;
+    }
+
+    // The image must have been created with new BufferedImage(width, height, type).
+    static RowWriter of(BufferedImage image) {
+        return switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB -> new IntRowWriter(image);
+            case BufferedImage.TYPE_BYTE_GRAY -> new GrayRowWriter(image);
+            case BufferedImage.TYPE_BYTE_BINARY -> new BinaryRowWriter(image);
+            default -> throw new IllegalArgumentException("Unsupported output image type: " + image.getType());
+        };
+    }
+
+    private static final class IntRowWriter extends RowWriter {
+        private final int[] data;
+
+        IntRowWriter(BufferedImage image) {
+            super(image.getWidth());
+            this.data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        @Override
+        int[] data() {
+            return data;
+        }
+
+        @Override
+        int offset(int y) {
+            return y * width;
+        }
+
+        @Override
+        void store(int y) {
+        }
+    }
+
+    private static final class GrayRowWriter extends RowWriter {
+        private final byte[] data;
+        private final int[] row;
+
+        GrayRowWriter(BufferedImage image) {
+            super(image.getWidth());
+            this.data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            this.row = new int[width];
+        }
+
+        @Override
+        int[] data() {
+            return row;
+        }
+
+        @Override
+        int offset(int y) {
+            return 0;
+        }
+
+        @Override
+        void store(int y) {
+            int index = y * width;
+            for (int x = 0; x < width; x++) {
+                data[index + x] = (byte) row[x];
+            }
+        }
+    }
+
+    private static final class BinaryRowWriter extends RowWriter {
+        private final byte[] data;
+        private final int[] row;
+        private final int stride;
+
+        BinaryRowWriter(BufferedImage image) {
+            super(image.getWidth());
+            this.data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            this.row = new int[width];
+            this.stride = (width + 7) / 8;
+        }
+
+        @Override
+        int[] data() {
+            return row;
+        }
+
+        @Override
+        int offset(int y) {
+            return 0;
+        }
+
+        @Override
+        void store(int y) {
+            int index = y * stride;
+            for (int x = 0; x < width; x += 8, index++) {
+                int end = Math.min(width, x + 8);
+                int bits = 0;
+                for (int i = x; i < end; i++) {
+                    bits |= ((row[i] & 0x80) >> 7) << (7 - (i - x));
+                }
+                data[index] = (byte) bits;
+            }
+        }
+    }
+}
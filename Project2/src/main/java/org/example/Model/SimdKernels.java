@@ -0,0 +1,13 @@
+package org.example.Model;
+
+// SIMD versions of the grayscale and ordered dither kernels, with the same output as the scalar
+// ones. Implemented by VectorKernels, which is only compiled with -Pvector; see Kernels.simd().
+public interface SimdKernels {
+    RowKernel grayscale();
+
+    // Whether orderedDither can handle a matrixSize x matrixSize matrix.
+    boolean supportsMatrixSize(int matrixSize);
+
+    // Same contract as Kernels.orderedDither; requires supportsMatrixSize(matrix.length).
+    RowKernel orderedDither(int[][] matrix, int phaseX, int phaseY);
+}
@@ -0,0 +1,180 @@
+package org.example.Model;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Processes BMPs that do not fit in the heap. The source is read in bands of bandHeight rows,
+// run through the row kernels and written straight to the output BMP (8-bit for grayscale,
+// 1-bit for dithering, 24-bit otherwise), so peak memory is a couple of bands regardless of the
+// image size. Auto level makes one pass for the histogram
+// and a second pass to apply it.
+public class StreamingProcessor {
+    public static final int DEFAULT_BAND_HEIGHT = 256;
+
+    private final int bandHeight;
+
+    public StreamingProcessor() {
+        this(DEFAULT_BAND_HEIGHT);
+    }
+
+    public StreamingProcessor(int bandHeight) {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("Band height must be at least 1: " + bandHeight);
+        }
+        this.bandHeight = bandHeight;
+    }
+
+    public void process(File input, File output, ImageModel.ImageState operation, ProgressMonitor monitor)
+            throws IOException {
+        process(input, output, operation, DitherMode.ORDERED_4, monitor);
+    }
+
+    // Rows are processed strictly top to bottom on one thread, so error diffusion streams too.
+    // Like ImageModel.saveImage, the result is written next to output and moved into place once
+    // complete, so output may be the input itself and a failure leaves no truncated file.
+    public void process(File input, File output, ImageModel.ImageState operation, DitherMode dither,
+                        ProgressMonitor monitor) throws IOException {
+        Path target = output.toPath();
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                process(in, out, operation, dither, monitor);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private void process(FileChannel in, FileChannel out, ImageModel.ImageState operation, DitherMode dither,
+                         ProgressMonitor monitor) throws IOException {
+        BmpCodec.Header header = readHeader(in);
+        switch (operation) {
+            case ORIGINAL -> apply(in, out, header, List.of(), 24, monitor);
+            case GRAYSCALE -> apply(in, out, header, List.of(Kernels.grayscale()), 8, monitor);
+            case ORDERED_DITHER -> apply(in, out, header,
+                    List.of(Kernels.grayscale(), dither.streamingKernel(header.width)), 1, monitor);
+            case AUTO_LEVEL -> {
+                ImageHistogram histogram = new ImageHistogram();
+                scan(in, header, histogram, monitor.slice(0, 0.5));
+                apply(in, out, header, List.of(Kernels.autoLevel(histogram.min(), histogram.max())), 24,
+                        monitor.slice(0.5, 1));
+            }
+            default -> throw new IllegalArgumentException("Operation not supported in streaming mode: " + operation);
+        }
+    }
+
+    static BmpCodec.Header readHeader(FileChannel in) throws IOException {
+        BmpCodec.Header header = BmpCodec.readHeader(in);
+        if (header == null) {
+            throw new IOException("Streaming mode supports only uncompressed 1, 8, 24 and 32-bit BMPs.");
+        }
+        return header;
+    }
+
+    private void scan(FileChannel in, BmpCodec.Header header, PixelEngine.RowVisitor visitor, ProgressMonitor monitor)
+            throws IOException {
+        BandReader reader = new BandReader(in, header, bandHeight);
+        for (int fromY = 0; fromY < header.height; fromY += bandHeight) {
+            monitor.checkCancelled();
+            int rows = reader.read(fromY);
+            for (int row = 0; row < rows; row++) {
+                visitor.visit(reader.pixels, row * header.width, header.width, fromY + row);
+            }
+            monitor.worked((double) (fromY + rows) / header.height);
+        }
+    }
+
+    private void apply(FileChannel in, FileChannel out, BmpCodec.Header header, List<RowKernel> kernels,
+                       int bitsPerPixel, ProgressMonitor monitor) throws IOException {
+        int width = header.width;
+        int height = header.height;
+        int stride = BmpCodec.rowStride(width, bitsPerPixel);
+        int[] palette = BmpCodec.paletteFor(bitsPerPixel);
+        long dataOffset = BmpCodec.FILE_HEADER_SIZE + BmpCodec.INFO_HEADER_SIZE + palette.length * 4L;
+
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        BmpCodec.writeHeaders(headerBytes, width, height, bitsPerPixel, dataOffset + (long) stride * height,
+                palette.length);
+        BmpCodec.writePalette(headerBytes, palette);
+        headerBytes.flip();
+        writeFully(out, headerBytes, 0);
+
+        BandReader reader = new BandReader(in, header, bandHeight);
+        ByteBuffer band = ByteBuffer.allocate(stride * Math.min(bandHeight, height));
+        RowKernel kernel = Kernels.fuse(kernels);
+        int[] row = new int[width];
+        for (int fromY = 0; fromY < height; fromY += bandHeight) {
+            monitor.checkCancelled();
+            int rows = reader.read(fromY);
+            byte[] bytes = band.array();
+            // The output is bottom-up, so the band is stored last row first.
+            for (int i = 0; i < rows; i++) {
+                int y = fromY + i;
+                kernel.apply(reader.pixels, i * width, row, 0, width, y);
+                BmpCodec.encodeRow(row, 0, width, bitsPerPixel, bytes, (rows - 1 - i) * stride);
+            }
+            band.position(0).limit(rows * stride);
+            writeFully(out, band, dataOffset + (long) (height - fromY - rows) * stride);
+            band.clear();
+            monitor.worked((double) (fromY + rows) / height);
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of BMP file.");
+            }
+            position += read;
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Reads bands of rows (top to bottom in image order) and unpacks them into an int band buffer.
+    private static final class BandReader {
+        private final FileChannel in;
+        private final BmpCodec.Header header;
+        private final int bandHeight;
+        private final ByteBuffer bytes;
+        final int[] pixels;
+
+        BandReader(FileChannel in, BmpCodec.Header header, int bandHeight) {
+            this.in = in;
+            this.header = header;
+            this.bandHeight = bandHeight;
+            int rows = Math.min(bandHeight, header.height);
+            this.bytes = ByteBuffer.allocate(header.rowStride * rows).order(ByteOrder.LITTLE_ENDIAN);
+            this.pixels = new int[header.width * rows];
+        }
+
+        int read(int fromY) throws IOException {
+            int rows = Math.min(bandHeight, header.height - fromY);
+            int lastY = fromY + rows - 1;
+            // Rows of a band are contiguous in the file; for bottom-up files the last image row comes first.
+            long start = header.topDown ? header.rowPosition(fromY) : header.rowPosition(lastY);
+            bytes.clear().limit(rows * header.rowStride);
+            readFully(in, bytes, start);
+            for (int i = 0; i < rows; i++) {
+                int fileRow = header.topDown ? i : rows - 1 - i;
+                header.decodeRow(bytes, fileRow * header.rowStride, pixels, i * header.width);
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.Model;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Times image operations. Each span emits an OperationEvent to Flight Recorder (when a
+// recording has it enabled) and feeds an OperationStats MBean registered per operation as
+// org.example:type=ImageOperation,name=<operation>. Allocation is measured on the calling
+// thread, which allocates the output frames. The JDK has no per-thread counter for virtual
+// threads, so their spans report none rather than a process-wide delta that would include
+// concurrent work.
+public final class Telemetry {
+    private static final String DOMAIN = "org.example";
+    private static final Map<String, OperationStats> STATS = new ConcurrentHashMap<>();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private Telemetry() {
+    }
+
+    // Usage: try (Telemetry.Span span = Telemetry.begin("grayscale")) { ...; span.succeeded(); }
+    // A span closed without succeeded() counts as a failure, which includes cancellation.
+    public static Span begin(String operation) {
+        return new Span(stats(operation));
+    }
+
+    public static OperationStats stats(String operation) {
+        return STATS.computeIfAbsent(operation, Telemetry::register);
+    }
+
+    private static OperationStats register(String operation) {
+        OperationStats stats = new OperationStats(operation);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=ImageOperation,name=" + ObjectName.quote(operation));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(stats, name);
+            }
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not register telemetry MBean for " + operation + ": " + e.getMessage());
+        }
+        return stats;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean counter && counter.isThreadAllocatedMemorySupported()
+                && counter.isThreadAllocatedMemoryEnabled()) {
+            return counter;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes(boolean virtual) {
+        return THREADS == null || virtual ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final OperationStats stats;
+        private final OperationEvent event = new OperationEvent();
+        private final boolean virtual = Thread.currentThread().isVirtual();
+        private final long startNanos;
+        private final long startAllocated;
+        private int width;
+        private int height;
+        private boolean succeeded;
+
+        private Span(OperationStats stats) {
+            this.stats = stats;
+            event.begin();
+            this.startAllocated = allocatedBytes(virtual);
+            this.startNanos = System.nanoTime();
+        }
+
+        public Span image(BufferedImage image) {
+            if (image != null) {
+                dimensions(image.getWidth(), image.getHeight());
+            }
+            return this;
+        }
+
+        public Span dimensions(int width, int height) {
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        public void succeeded() {
+            succeeded = true;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            long endAllocated = allocatedBytes(virtual);
+            long allocated = startAllocated < 0 || endAllocated < 0 ? -1 : endAllocated - startAllocated;
+            long pixels = (long) width * height;
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = stats.getOperation();
+                event.width = width;
+                event.height = height;
+                event.pixels = pixels;
+                event.allocatedBytes = allocated;
+                event.succeeded = succeeded;
+                event.commit();
+            }
+            stats.record(nanos, pixels, allocated, succeeded);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.Model;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Thumbnails of BMP files stored as small BMPs in a directory, so a folder that was browsed
+// before shows at once and only new or changed files are decoded again. Entries are keyed by the
+// file's absolute path, size and modification time, and are deleted least-recently-used first
+// once the directory exceeds its byte budget. The use order is kept as the entries' modification
+// times, so it survives restarts. Safe for concurrent use; the cache is best effort, so a
+// directory that cannot be written only costs the decoding.
+public class ThumbnailCache {
+    public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_SIZE = 160;
+    private static final String SUFFIX = ".bmp";
+    // Only used to scale the variants readThumbnail does not decode; never creates a pool.
+    private static final PixelEngine SCALER = new PixelEngine(1, PixelEngine.DEFAULT_TILE_HEIGHT);
+
+    private final Path directory;
+    private final long budgetBytes;
+    private final int size;
+    // Entry file name to its size in bytes, least recently used first.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private boolean indexed;
+
+    public ThumbnailCache() {
+        this(Path.of(System.getProperty("user.home"), ".mini-photoshop", "thumbnails"), DEFAULT_BUDGET_BYTES,
+                DEFAULT_SIZE);
+    }
+
+    public ThumbnailCache(Path directory, long budgetBytes, int size) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("Cache budget must not be negative: " + budgetBytes);
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Thumbnail size must be at least 1: " + size);
+        }
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public synchronized long getUsedBytes() {
+        index();
+        return usedBytes;
+    }
+
+    // The thumbnail of file, scaled to fit size x size, from the cache or decoded and cached.
+    public BufferedImage thumbnail(File file) throws IOException {
+        String name = entryName(file);
+        Path entry = directory.resolve(name);
+        if (contains(name)) {
+            try {
+                BufferedImage cached = BmpCodec.read(entry.toFile());
+                if (cached != null) {
+                    Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                    return cached;
+                }
+            } catch (IOException e) {
+                // deleted or damaged behind our back; decode again
+            }
+            remove(name);
+        }
+        BufferedImage thumbnail = decode(file);
+        store(name, entry, thumbnail);
+        return thumbnail;
+    }
+
+    private BufferedImage decode(File file) throws IOException {
+        BufferedImage thumbnail = BmpCodec.readThumbnail(file, size, size);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+        try {
+            BufferedImage full = Imaging.getBufferedImage(file);
+            if (full == null) {
+                throw new IOException("Invalid BMP file.");
+            }
+            return SCALER.downsample(full, size, size);
+        } catch (ImageReadException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Changing any of the path, length and modification time of the file gives a new entry; the
+    // old one is left to age out.
+    private String entryName(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        String key = path + "\n" + Files.size(path) + "\n" + Files.getLastModifiedTime(path).toMillis() + "\n" + size;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8))) + SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized boolean contains(String name) {
+        index();
+        return entries.get(name) != null;
+    }
+
+    private synchronized void remove(String name) {
+        Long removed = entries.remove(name);
+        if (removed != null) {
+            usedBytes -= removed;
+        }
+    }
+
+    // Written under a temporary name and moved into place, so concurrent readers never see a
+    // partial entry.
+    private void store(String name, Path entry, BufferedImage thumbnail) {
+        try {
+            Files.createDirectories(directory);
+            Path partial = Files.createTempFile(directory, name, ".part");
+            try {
+                BmpCodec.write(thumbnail, partial.toFile());
+                Files.move(partial, entry, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+            long bytes = Files.size(entry);
+            synchronized (this) {
+                index();
+                Long previous = entries.put(name, bytes);
+                usedBytes += bytes - (previous == null ? 0 : previous);
+                evict();
+            }
+        } catch (IOException e) {
+            // the thumbnail is still returned, only not cached
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                // dropped from the index anyway; the next index run retries
+            }
+            usedBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    // Reads the entries left by earlier runs, oldest use first, and removes leftover partial files.
+    private void index() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        record Found(String name, long bytes, long used) {
+        }
+        List<Found> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".part")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(SUFFIX)) {
+                    found.add(new Found(name, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                }
+            }
+        } catch (IOException e) {
+            // start from whatever was indexed
+        }
+        found.sort(Comparator.comparingLong(Found::used));
+        for (Found entry : found) {
+            entries.put(entry.name(), entry.bytes());
+            usedBytes += entry.bytes();
+        }
+        evict();
+    }
+}
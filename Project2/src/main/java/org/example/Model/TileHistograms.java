@@ -0,0 +1,159 @@
+package org.example.Model;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+// Histograms of an image per tile of tileSize x tileSize pixels, stored as 2D prefix sums so the
+// histogram of any block of whole tiles costs four lookups per bin. The histogram of an
+// arbitrary rectangle adds the scan of its partial tiles along the border, so auto level of a
+// crop reads O(perimeter x tileSize) pixels instead of the whole crop. Uses about
+// 3 KB per tile (12 MB for a 50 MP image with the default tile size).
+public final class TileHistograms {
+    public static final int DEFAULT_TILE_SIZE = 128;
+    private static final int BINS = 3 * 256;
+
+    private final BufferedImage image;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+    // prefix[(ty * (tilesX + 1) + tx) * BINS + bin] counts pixels in tiles [0, ty) x [0, tx)
+    private final int[] prefix;
+    private final ImageHistogram total;
+
+    private TileHistograms(BufferedImage image, int tileSize, Map<Integer, int[]> tileRows) {
+        this.image = image;
+        this.tileSize = tileSize;
+        this.tilesX = (image.getWidth() + tileSize - 1) / tileSize;
+        this.tilesY = (image.getHeight() + tileSize - 1) / tileSize;
+        this.prefix = new int[(tilesY + 1) * (tilesX + 1) * BINS];
+        int rowLength = (tilesX + 1) * BINS;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int[] tiles = tileRows.get(ty);
+            int above = ty * rowLength;
+            int current = (ty + 1) * rowLength;
+            for (int tx = 0; tx < tilesX; tx++) {
+                int up = above + (tx + 1) * BINS;
+                int left = current + tx * BINS;
+                int upLeft = above + tx * BINS;
+                int here = current + (tx + 1) * BINS;
+                int tile = tx * BINS;
+                for (int bin = 0; bin < BINS; bin++) {
+                    prefix[here + bin] = prefix[up + bin] + prefix[left + bin] - prefix[upLeft + bin] + tiles[tile + bin];
+                }
+            }
+        }
+        this.total = histogram(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    public static TileHistograms build(BufferedImage image, PixelEngine engine) {
+        return build(image, engine, DEFAULT_TILE_SIZE, ProgressMonitor.NONE);
+    }
+
+    public static TileHistograms build(BufferedImage image, PixelEngine engine, int tileSize, ProgressMonitor monitor) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be at least 1: " + tileSize);
+        }
+        int tilesX = (image.getWidth() + tileSize - 1) / tileSize;
+        TileRows rows = engine.reduce(image, () -> new TileRows(tileSize, tilesX), TileRows::merge, monitor);
+        return new TileHistograms(image, tileSize, rows.rows);
+    }
+
+    public BufferedImage image() {
+        return image;
+    }
+
+    public ImageHistogram total() {
+        return total;
+    }
+
+    // Exact histogram of the given rectangle of the image.
+    public ImageHistogram histogram(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > image.getWidth() || y + height > image.getHeight()) {
+            throw new IllegalArgumentException("Region out of bounds: " + x + "," + y + " " + width + "x" + height);
+        }
+        if (total != null && x == 0 && y == 0 && width == image.getWidth() && height == image.getHeight()) {
+            return total;
+        }
+        ImageHistogram histogram = new ImageHistogram();
+        // whole tiles inside the rectangle; the last tile row and column may be cut by the image edge
+        int tx0 = (x + tileSize - 1) / tileSize;
+        int ty0 = (y + tileSize - 1) / tileSize;
+        int tx1 = x + width == image.getWidth() ? tilesX : (x + width) / tileSize;
+        int ty1 = y + height == image.getHeight() ? tilesY : (y + height) / tileSize;
+        if (tx0 >= tx1 || ty0 >= ty1) {
+            scan(histogram, x, y, width, height);
+            return histogram;
+        }
+        int innerX0 = tx0 * tileSize;
+        int innerY0 = ty0 * tileSize;
+        int innerX1 = Math.min(image.getWidth(), tx1 * tileSize);
+        int innerY1 = Math.min(image.getHeight(), ty1 * tileSize);
+
+        int rowLength = (tilesX + 1) * BINS;
+        int[] bins = new int[BINS];
+        int a = ty1 * rowLength + tx1 * BINS;
+        int b = ty0 * rowLength + tx1 * BINS;
+        int c = ty1 * rowLength + tx0 * BINS;
+        int d = ty0 * rowLength + tx0 * BINS;
+        for (int bin = 0; bin < BINS; bin++) {
+            bins[bin] = prefix[a + bin] - prefix[b + bin] - prefix[c + bin] + prefix[d + bin];
+        }
+        histogram.add(bins, 0, (long) (innerX1 - innerX0) * (innerY1 - innerY0));
+
+        scan(histogram, x, y, width, innerY0 - y);
+        scan(histogram, x, innerY1, width, y + height - innerY1);
+        scan(histogram, x, innerY0, innerX0 - x, innerY1 - innerY0);
+        scan(histogram, innerX1, innerY0, x + width - innerX1, innerY1 - innerY0);
+        return histogram;
+    }
+
+    private void scan(ImageHistogram histogram, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        RowReader reader = RowReader.of(image.getSubimage(x, y, width, height));
+        for (int row = 0; row < height; row++) {
+            int offset = reader.load(row);
+            histogram.visit(reader.data(), offset, width, row);
+        }
+    }
+
+    // Per-tile bins for the tile rows touched by one band of image rows.
+    private static final class TileRows implements PixelEngine.RowVisitor {
+        final int tileSize;
+        final int tilesX;
+        final Map<Integer, int[]> rows = new HashMap<>();
+
+        TileRows(int tileSize, int tilesX) {
+            this.tileSize = tileSize;
+            this.tilesX = tilesX;
+        }
+
+        @Override
+        public void visit(int[] src, int srcOffset, int width, int y) {
+            int[] tiles = rows.computeIfAbsent(y / tileSize, key -> new int[tilesX * BINS]);
+            for (int tx = 0, x = 0; tx < tilesX; tx++) {
+                int end = Math.min(width, x + tileSize);
+                int red = tx * BINS;
+                int green = red + 256;
+                int blue = red + 512;
+                for (; x < end; x++) {
+                    int rgb = src[srcOffset + x];
+                    tiles[red + ((rgb >> 16) & 0xFF)]++;
+                    tiles[green + ((rgb >> 8) & 0xFF)]++;
+                    tiles[blue + (rgb & 0xFF)]++;
+                }
+            }
+        }
+
+        TileRows merge(TileRows other) {
+            other.rows.forEach((row, tiles) -> rows.merge(row, tiles, (mine, theirs) -> {
+                for (int i = 0; i < mine.length; i++) {
+                    mine[i] += theirs[i];
+                }
+                return mine;
+            }));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package org.example.View;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Paints one image, or several side by side with a shared zoom and pan, drawing only the part
+// of each image that is visible. Zoomed-out views are drawn from a cached mipmap pyramid of
+// half-size compatible images, so Java2D can blit them as managed images instead of scaling the
+// full-resolution frame on every repaint. The levels are scaled on a background thread; until
+// one is ready the nearest built level, or the image itself, is drawn in its place.
+// Drag to pan, wheel to zoom, double-click to fit.
+// A pane can also show a low-resolution proxy stretched to the full size, with bands of the
+// full-resolution result painted over it as they are computed.
+public class ImageCanvas extends JComponent {
+    private static final double MIN_ZOOM = 1.0 / 64;
+    private static final double MAX_ZOOM = 32;
+    private static final int PANEL_GAP = 8;
+    // Level 0 is copied into a compatible image only up to this size; larger frames are drawn
+    // directly to avoid doubling their memory.
+    private static final long MAX_COMPATIBLE_PIXELS = 16_000_000L;
+
+    // Only for images of the current panes: a pyramid may hold its image as level 0.
+    private final Map<BufferedImage, Pyramid> pyramids = new HashMap<>();
+    private final ExecutorService scaler = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Pane> panes = new ArrayList<>();
+    // the images of the last setImages, which a preview replaces only until it is committed
+    private BufferedImage[] committed = {};
+    private double zoom = 1;
+    // image coordinate shown at the top-left corner of each panel
+    private double viewX;
+    private double viewY;
+    private boolean fitPending;
+    private Point dragStart;
+
+    public ImageCanvas() {
+        setOpaque(true);
+        setBackground(new Color(0x2B2B2B));
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart != null) {
+                    viewX -= (e.getX() - dragStart.x) / zoom;
+                    viewY -= (e.getY() - dragStart.y) / zoom;
+                    dragStart = e.getPoint();
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragStart = null;
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    fitToWindow();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAround(e.getPoint(), Math.pow(1.25, -e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    // Shows the given images side by side. Zoom and pan are kept when the new images have the
+    // same size as the old ones, so before/after comparisons stay aligned.
+    public void setImages(BufferedImage... newImages) {
+        committed = newImages.clone();
+        List<Pane> next = new ArrayList<>();
+        for (BufferedImage image : newImages) {
+            if (image != null) {
+                next.add(new Pane(image, image.getWidth(), image.getHeight()));
+            }
+        }
+        show(next);
+    }
+
+    // Like setImages, but images smaller than width x height are proxies and are stretched to it.
+    public void setPreview(int width, int height, BufferedImage... newImages) {
+        List<Pane> next = new ArrayList<>();
+        for (BufferedImage image : newImages) {
+            if (image != null) {
+                next.add(new Pane(image, width, height));
+            }
+        }
+        show(next);
+    }
+
+    // Shows the images of the last setImages again, replacing any preview.
+    public void restoreImages() {
+        setImages(committed);
+    }
+
+    // Paints rows [fromY, toY) of result over the given pane, which must be showing a preview of
+    // the same size.
+    public void refine(int pane, BufferedImage result, int fromY, int toY) {
+        if (pane >= panes.size()) {
+            return;
+        }
+        Pane target = panes.get(pane);
+        if (result.getWidth() != target.width || result.getHeight() != target.height) {
+            return;
+        }
+        if (target.partial != result) {
+            target.partial = result;
+            target.rows.clear();
+        }
+        target.rows.set(fromY, toY);
+        repaint();
+    }
+
+    // The image in the last pane, i.e. the result of the shown operation, or null while that pane
+    // is a preview.
+    public BufferedImage getResultImage() {
+        if (panes.isEmpty()) {
+            return null;
+        }
+        Pane last = panes.get(panes.size() - 1);
+        boolean complete = last.partial == null && last.image.getWidth() == last.width
+                && last.image.getHeight() == last.height;
+        return complete ? last.image : null;
+    }
+
+    private void show(List<Pane> next) {
+        Pane oldFirst = panes.isEmpty() ? null : panes.get(0);
+        panes.clear();
+        panes.addAll(next);
+        Set<BufferedImage> shown = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Pane pane : panes) {
+            shown.add(pane.image);
+        }
+        pyramids.values().removeIf(pyramid -> {
+            boolean dropped = !shown.contains(pyramid.image);
+            pyramid.discarded |= dropped;
+            return dropped;
+        });
+        for (Pane pane : panes) {
+            if (pane.isFullSize()) {
+                // starts the level 0 copy now rather than at the first paint
+                pyramid(pane.image).level(0);
+            }
+        }
+        if (panes.isEmpty() || oldFirst == null
+                || oldFirst.width != panes.get(0).width || oldFirst.height != panes.get(0).height) {
+            fitPending = true;
+        }
+        repaint();
+    }
+
+    public void fitToWindow() {
+        fitPending = true;
+        repaint();
+    }
+
+    private void zoomAround(Point anchor, double factor) {
+        if (panes.isEmpty()) {
+            return;
+        }
+        Rectangle panel = panelBounds(0);
+        int localX = (anchor.x - panel.x) % (panel.width + PANEL_GAP);
+        Point2D before = new Point2D.Double(viewX + localX / zoom, viewY + (anchor.y - panel.y) / zoom);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        viewX = before.getX() - localX / zoom;
+        viewY = before.getY() - (anchor.y - panel.y) / zoom;
+        repaint();
+    }
+
+    private Rectangle panelBounds(int index) {
+        int count = Math.max(1, panes.size());
+        int width = (getWidth() - PANEL_GAP * (count - 1)) / count;
+        return new Rectangle(index * (width + PANEL_GAP), 0, width, getHeight());
+    }
+
+    private void applyFit() {
+        fitPending = false;
+        Pane first = panes.get(0);
+        Rectangle panel = panelBounds(0);
+        zoom = Math.min(1, Math.min((double) panel.width / first.width, (double) panel.height / first.height));
+        zoom = Math.max(MIN_ZOOM, zoom);
+        // center the image in the panel
+        viewX = (first.width - panel.width / zoom) / 2;
+        viewY = (first.height - panel.height / zoom) / 2;
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            if (panes.isEmpty() || getWidth() <= 0 || getHeight() <= 0) {
+                return;
+            }
+            if (fitPending) {
+                applyFit();
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, zoom < 1
+                    ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                    : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            for (int i = 0; i < panes.size(); i++) {
+                Rectangle panel = panelBounds(i);
+                Graphics2D panelGraphics = (Graphics2D) g.create(panel.x, panel.y, panel.width, panel.height);
+                try {
+                    paintPane(panelGraphics, panes.get(i), panel.width, panel.height);
+                } finally {
+                    panelGraphics.dispose();
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private void paintPane(Graphics2D g, Pane pane, int panelWidth, int panelHeight) {
+        // visible part of the pane, in full-resolution coordinates
+        double left = Math.max(0, viewX);
+        double top = Math.max(0, viewY);
+        double right = Math.min(pane.width, viewX + panelWidth / zoom);
+        double bottom = Math.min(pane.height, viewY + panelHeight / zoom);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+
+        BufferedImage image = pane.image;
+        if (pane.isFullSize()) {
+            int level = zoom >= 1 ? 0 : (int) Math.floor(Math.log(1 / zoom) / Math.log(2));
+            BufferedImage source = pyramid(image).level(level);
+            paintRegion(g, source, (double) source.getWidth() / pane.width, left, top, right, bottom);
+        } else {
+            paintRegion(g, image, (double) image.getWidth() / pane.width, left, top, right, bottom);
+        }
+        if (pane.partial != null) {
+            // the partial result is still being written, so it is drawn directly and never cached
+            for (int from = pane.rows.nextSetBit((int) top); from >= 0 && from < bottom;
+                 from = pane.rows.nextSetBit(from)) {
+                int to = pane.rows.nextClearBit(from);
+                paintRegion(g, pane.partial, 1, left, from, right, Math.min(bottom, to));
+                from = to;
+            }
+        }
+    }
+
+    private Pyramid pyramid(BufferedImage image) {
+        return pyramids.computeIfAbsent(image, key -> new Pyramid(key, getGraphicsConfiguration()));
+    }
+
+    // Draws the part of source covering [left, right) x [top, bottom) in full-resolution
+    // coordinates; source pixels are full-resolution pixels times scale.
+    private void paintRegion(Graphics2D g, BufferedImage source, double scale,
+                             double left, double top, double right, double bottom) {
+        int sx1 = (int) Math.floor(left * scale);
+        int sy1 = (int) Math.floor(top * scale);
+        int sx2 = Math.min(source.getWidth(), (int) Math.ceil(right * scale));
+        int sy2 = Math.min(source.getHeight(), (int) Math.ceil(bottom * scale));
+        int dx1 = (int) Math.round((sx1 / scale - viewX) * zoom);
+        int dy1 = (int) Math.round((sy1 / scale - viewY) * zoom);
+        int dx2 = (int) Math.round((sx2 / scale - viewX) * zoom);
+        int dy2 = (int) Math.round((sy2 / scale - viewY) * zoom);
+        g.drawImage(source, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+    }
+
+    // An image shown at width x height; a smaller image is a proxy for a result of that size.
+    private static final class Pane {
+        final BufferedImage image;
+        final int width;
+        final int height;
+        final BitSet rows = new BitSet();
+        BufferedImage partial;
+
+        Pane(BufferedImage image, int width, int height) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+        }
+
+        boolean isFullSize() {
+            return image.getWidth() == width && image.getHeight() == height;
+        }
+    }
+
+    // Level n is the image scaled by 1 / 2^n, built from level n - 1. level is called on the EDT
+    // and only schedules the scaling; builds run on the scaler one after another and repaint the
+    // canvas as each level is done.
+    private final class Pyramid {
+        private final BufferedImage image;
+        private final GraphicsConfiguration configuration;
+        private final AtomicReferenceArray<BufferedImage> levels;
+        // highest level a build has been scheduled for; EDT only
+        private int requested = -1;
+        private volatile boolean discarded;
+
+        Pyramid(BufferedImage image, GraphicsConfiguration configuration) {
+            if (configuration == null && !GraphicsEnvironment.isHeadless()) {
+                configuration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                        .getDefaultConfiguration();
+            }
+            this.image = image;
+            this.configuration = configuration;
+            int count = 1;
+            for (int width = image.getWidth(), height = image.getHeight(); width > 1 || height > 1; count++) {
+                width = Math.max(1, width / 2);
+                height = Math.max(1, height / 2);
+            }
+            this.levels = new AtomicReferenceArray<>(count);
+            boolean compatible = configuration == null
+                    ? image.getType() == BufferedImage.TYPE_INT_RGB
+                    : image.getColorModel().equals(configuration.getColorModel());
+            if (compatible || (long) image.getWidth() * image.getHeight() > MAX_COMPATIBLE_PIXELS) {
+                levels.set(0, image);
+            }
+        }
+
+        // The level if it is built, else the nearest finer one, else the nearest coarser one,
+        // else the image itself.
+        BufferedImage level(int level) {
+            level = Math.min(level, levels.length() - 1);
+            if (level > requested) {
+                int upTo = level;
+                requested = level;
+                scaler.execute(() -> build(upTo));
+            }
+            for (int i = level; i >= 0; i--) {
+                if (levels.get(i) != null) {
+                    return levels.get(i);
+                }
+            }
+            for (int i = level + 1; i < levels.length(); i++) {
+                if (levels.get(i) != null) {
+                    return levels.get(i);
+                }
+            }
+            return image;
+        }
+
+        private synchronized void build(int upTo) {
+            for (int i = 0; i <= upTo && !discarded; i++) {
+                if (levels.get(i) == null) {
+                    BufferedImage previous = i == 0 ? image : levels.get(i - 1);
+                    int width = i == 0 ? image.getWidth() : Math.max(1, previous.getWidth() / 2);
+                    int height = i == 0 ? image.getHeight() : Math.max(1, previous.getHeight() / 2);
+                    levels.set(i, scaled(previous, width, height));
+                    SwingUtilities.invokeLater(ImageCanvas.this::repaint);
+                }
+            }
+        }
+
+        private BufferedImage scaled(BufferedImage source, int width, int height) {
+            BufferedImage target = configuration != null
+                    ? configuration.createCompatibleImage(width, height, Transparency.OPAQUE)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = target.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            return target;
+        }
+    }
+}
@@ -2,28 +2,57 @@ package org.example.View;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.function.Consumer;
 
 public class ImageView extends JFrame {
     private JMenuItem openFileItem;
+    private JMenuItem browseItem;
     private JMenuItem exitItem;
     private JMenuItem grayscaleItem;
     private JMenuItem ditherItem;
     private JMenuItem autoLevelItem;
+    private JMenuItem clippedAutoLevelItem;
     private JMenuItem exportItem;
     private JMenuItem cropItem;
+    private JMenuItem streamItem;
+    private JMenuItem undoItem;
+    private JMenuItem redoItem;
+    private JCheckBoxMenuItem progressivePreviewItem;
+    private final JMenu ditherModeMenu = new JMenu("Dither Mode");
+    private final JPanel statusPanel = new JPanel(new BorderLayout(8, 0));
+    private final JLabel statusLabel = new JLabel();
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JLabel backgroundLabel = new JLabel();
+    private final ImageCanvas canvas = new ImageCanvas();
 
     public ImageView() {
         setTitle("BMP Viewer");
         setSize(1000, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        JLabel imageLabel = new JLabel();
-        imageLabel.setHorizontalAlignment(JLabel.CENTER);
-        getContentPane().add(imageLabel, BorderLayout.CENTER);
+        getContentPane().add(canvas, BorderLayout.CENTER);
 
         createMenuBar();
+        createStatusBar();
+    }
+
+    private void createStatusBar() {
+        statusPanel.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        statusPanel.add(statusLabel, BorderLayout.WEST);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+        statusPanel.add(cancelButton, BorderLayout.EAST);
+        statusPanel.setVisible(false);
+        backgroundLabel.setBorder(BorderFactory.createEmptyBorder(2, 8, 2, 8));
+        backgroundLabel.setVisible(false);
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(statusPanel, BorderLayout.CENTER);
+        south.add(backgroundLabel, BorderLayout.SOUTH);
+        getContentPane().add(south, BorderLayout.SOUTH);
     }
 
     private void createMenuBar() {
@@ -34,11 +63,15 @@ public class ImageView extends JFrame {
         styleButtonItem(openFileItem);
         coreOperationsMenu.add(openFileItem);
 
+        browseItem = new JMenuItem("Browse Folder");
+        styleButtonItem(browseItem);
+        coreOperationsMenu.add(browseItem);
+
         grayscaleItem = new JMenuItem("Grayscale");
         styleButtonItem(grayscaleItem);
         coreOperationsMenu.add(grayscaleItem);
 
-        ditherItem = new JMenuItem("Ordered Dithering");
+        ditherItem = new JMenuItem("Dithering");
         styleButtonItem(ditherItem);
         coreOperationsMenu.add(ditherItem);
 
@@ -46,6 +79,10 @@ public class ImageView extends JFrame {
         styleButtonItem(autoLevelItem);
         coreOperationsMenu.add(autoLevelItem);
 
+        clippedAutoLevelItem = new JMenuItem("Auto Level (Clip 0.5%)");
+        styleButtonItem(clippedAutoLevelItem);
+        coreOperationsMenu.add(clippedAutoLevelItem);
+
         JMenu optionalOperationsMenu = new JMenu("Optional Operations");
         exportItem = new JMenuItem("Export Image");
         styleButtonItem(exportItem);
@@ -59,10 +96,35 @@ public class ImageView extends JFrame {
         styleButtonItem(cropItem);
         optionalOperationsMenu.add(cropItem);
 
+        streamItem = new JMenuItem("Process Large BMP");
+        styleButtonItem(streamItem);
+        optionalOperationsMenu.add(streamItem);
+
+        progressivePreviewItem = new JCheckBoxMenuItem("Progressive Preview", true);
+        styleButtonItem(progressivePreviewItem);
+        optionalOperationsMenu.add(progressivePreviewItem);
+
+        styleButtonItem(ditherModeMenu);
+        optionalOperationsMenu.add(ditherModeMenu);
+
+        JMenu editMenu = new JMenu("Edit");
+        undoItem = new JMenuItem("Undo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        styleButtonItem(undoItem);
+        editMenu.add(undoItem);
+
+        redoItem = new JMenuItem("Redo");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        styleButtonItem(redoItem);
+        editMenu.add(redoItem);
+        setUndoRedoEnabled(false, false);
+
         styleMenu(coreOperationsMenu);
         styleMenu(optionalOperationsMenu);
+        styleMenu(editMenu);
         menuBar.add(coreOperationsMenu);
         menuBar.add(optionalOperationsMenu);
+        menuBar.add(editMenu);
         setJMenuBar(menuBar);
     }
     private void styleMenu(JMenu menu) {
@@ -77,76 +139,78 @@ public class ImageView extends JFrame {
 
     public void updateImage(BufferedImage image) {
         if (image != null) {
-            getContentPane().removeAll();
-            JLabel singleImageLabel = new JLabel(new ImageIcon(image));
-            singleImageLabel.setHorizontalAlignment(JLabel.CENTER);
-            getContentPane().add(singleImageLabel, BorderLayout.CENTER);
-
-            revalidate();
-            repaint();
+            canvas.setImages(image);
         }
     }
     public void updateImageWithGrayScale(BufferedImage original, BufferedImage grayscale) {
         if (original != null && grayscale != null) {
-            getContentPane().removeAll();
-            JPanel panel = new JPanel(new GridLayout(1, 2));
-
-            JLabel originalLabel = new JLabel(new ImageIcon(original));
-            originalLabel.setHorizontalAlignment(JLabel.CENTER);
-            panel.add(originalLabel);
-
-            JLabel grayscaleLabel = new JLabel(new ImageIcon(grayscale));
-            grayscaleLabel.setHorizontalAlignment(JLabel.CENTER);
-            panel.add(grayscaleLabel);
-
-            getContentPane().add(panel, BorderLayout.CENTER);
-            revalidate();
-            repaint();
+            canvas.setImages(original, grayscale);
         }
     }
 
     public void updateImageWithDithering(BufferedImage grayscaleImage, BufferedImage ditheredImage) {
-        getContentPane().removeAll();
-        JPanel panel = new JPanel(new GridLayout(1, 2));
-
-        JLabel grayscaleLabel = new JLabel(new ImageIcon(grayscaleImage));
-        grayscaleLabel.setHorizontalAlignment(JLabel.CENTER);
-        panel.add(grayscaleLabel);
-
-        JLabel ditheredLabel = new JLabel(new ImageIcon(ditheredImage));
-        ditheredLabel.setHorizontalAlignment(JLabel.CENTER);
-        panel.add(ditheredLabel);
+        canvas.setImages(grayscaleImage, ditheredImage);
+    }
+    public void updateImageWithAutoLevel(BufferedImage originalImage, BufferedImage autoLeveledImage) {
+        canvas.setImages(originalImage, autoLeveledImage);
+    }
 
-        getContentPane().add(panel, BorderLayout.CENTER);
+    // Shows low-resolution stand-ins for images of width x height until the update* call with the
+    // real results; refinePreview paints finished rows of a result over its stand-in.
+    public void showPreview(int width, int height, BufferedImage... panes) {
+        canvas.setPreview(width, height, panes);
+    }
 
-        revalidate();
-        repaint();
+    public void refinePreview(int pane, BufferedImage partial, int fromY, int toY) {
+        canvas.refine(pane, partial, fromY, toY);
     }
-    public void updateImageWithAutoLevel(BufferedImage originalImage, BufferedImage autoLeveledImage) {
-        ImageIcon originalIcon = new ImageIcon(originalImage);
-        ImageIcon autoLeveledIcon = new ImageIcon(autoLeveledImage);
 
-        JPanel imagePanel = new JPanel(new GridLayout(1, 2));
+    // Drops a preview whose operation was cancelled or failed, showing the last update* images.
+    public void discardPreview() {
+        canvas.restoreImages();
+    }
 
-        JLabel originalLabel = new JLabel(originalIcon);
-        originalLabel.setHorizontalAlignment(JLabel.CENTER);
-        JLabel autoLeveledLabel = new JLabel(autoLeveledIcon);
-        autoLeveledLabel.setHorizontalAlignment(JLabel.CENTER);
+    public boolean isProgressivePreviewEnabled() {
+        return progressivePreviewItem.isSelected();
+    }
 
-        imagePanel.add(originalLabel);
-        imagePanel.add(autoLeveledLabel);
+    // Fills the Dither Mode menu with one radio item per mode, labelled by toString.
+    public <T> void setDitherModes(T[] modes, T selected, Consumer<T> listener) {
+        ditherModeMenu.removeAll();
+        ButtonGroup group = new ButtonGroup();
+        for (T mode : modes) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(mode.toString(), mode == selected);
+            styleButtonItem(item);
+            item.addActionListener(e -> listener.accept(mode));
+            group.add(item);
+            ditherModeMenu.add(item);
+        }
+    }
 
-        getContentPane().removeAll();
-        getContentPane().add(imagePanel, BorderLayout.CENTER);
+    // The full-resolution result currently shown, or null while it is still a preview.
+    public BufferedImage getDisplayedResult() {
+        return canvas.getResultImage();
+    }
 
+    // Status of work running beside the current operation, such as exports; null hides it.
+    public void setBackgroundStatus(String message) {
+        backgroundLabel.setText(message);
+        backgroundLabel.setVisible(message != null);
         revalidate();
-        repaint();
+    }
+
+    public Dimension getImageAreaSize() {
+        return canvas.getSize();
     }
 
     public void addOpenFileButtonListener(ActionListener listener) {
         openFileItem.addActionListener(listener);
     }
 
+    public void addBrowseButtonListener(ActionListener listener) {
+        browseItem.addActionListener(listener);
+    }
+
     public void addExitButtonListener(ActionListener listener) {
         exitItem.addActionListener(listener);
     }
@@ -160,6 +224,17 @@ public class ImageView extends JFrame {
     public void addAutoLevelButtonListener(ActionListener listener) {
         autoLevelItem.addActionListener(listener);
     }
+    public void addStreamButtonListener(ActionListener listener) { streamItem.addActionListener(listener);}
+    public void addCancelButtonListener(ActionListener listener) { cancelButton.addActionListener(listener);}
+    public void addClippedAutoLevelButtonListener(ActionListener listener) {
+        clippedAutoLevelItem.addActionListener(listener);
+    }
+    public void addUndoButtonListener(ActionListener listener) { undoItem.addActionListener(listener);}
+    public void addRedoButtonListener(ActionListener listener) { redoItem.addActionListener(listener);}
+    public void setUndoRedoEnabled(boolean canUndo, boolean canRedo) {
+        undoItem.setEnabled(canUndo);
+        redoItem.setEnabled(canRedo);
+    }
     public void addExportButtonListener(ActionListener listener) { exportItem.addActionListener(listener);}
     public void addCropButtonListener(ActionListener listener) { cropItem.addActionListener(listener);}
     public File showOpenFileDialog() {
@@ -188,6 +263,35 @@ public class ImageView extends JFrame {
         return null;
     }
 
+    public <T> T showChoiceDialog(String message, T[] choices) {
+        @SuppressWarnings("unchecked")
+        T choice = (T) JOptionPane.showInputDialog(this, message, "Choose", JOptionPane.QUESTION_MESSAGE,
+                null, choices, choices[0]);
+        return choice;
+    }
+
+    public void showMessage(String message) {
+        JOptionPane.showMessageDialog(this, message, "Done", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    public void showProgress(String message) {
+        statusLabel.setText(message);
+        progressBar.setValue(0);
+        statusPanel.setVisible(true);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        revalidate();
+    }
+
+    public void setProgress(int percent) {
+        progressBar.setValue(percent);
+    }
+
+    public void hideProgress() {
+        statusPanel.setVisible(false);
+        setCursor(Cursor.getDefaultCursor());
+        revalidate();
+    }
+
     public void showError(String message) {
         JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
@@ -0,0 +1,149 @@
+package org.example.View;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Grid of thumbnails for the BMPs in one folder. Files are listed at once and their thumbnails
+// are filled in as they arrive; double-clicking a file or pressing Open opens it.
+public class ThumbnailBrowser extends JDialog {
+    private static final int CELL_PADDING = 16;
+    private static final int LABEL_HEIGHT = 24;
+
+    private final DefaultListModel<Item> items = new DefaultListModel<>();
+    private final Map<File, Integer> indexes = new HashMap<>();
+    private final JList<Item> list = new JList<>(items);
+    private final JLabel folderLabel = new JLabel("No folder selected");
+    private final JButton folderButton = new JButton("Choose Folder...");
+    private final JButton openButton = new JButton("Open");
+    private File folder;
+    private Consumer<File> folderListener;
+    private Consumer<File> openListener;
+
+    private static final class Item {
+        final File file;
+        Icon icon;
+        String status = "Loading...";
+
+        Item(File file) {
+            this.file = file;
+        }
+    }
+
+    public ThumbnailBrowser(Frame owner, int thumbnailSize) {
+        super(owner, "Browse BMP Files", false);
+        setLayout(new BorderLayout(8, 8));
+
+        JPanel top = new JPanel(new BorderLayout(8, 0));
+        top.setBorder(BorderFactory.createEmptyBorder(8, 8, 0, 8));
+        top.add(folderButton, BorderLayout.WEST);
+        top.add(folderLabel, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFixedCellWidth(thumbnailSize + CELL_PADDING);
+        list.setFixedCellHeight(thumbnailSize + CELL_PADDING + LABEL_HEIGHT);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected,
+                                                          boolean focused) {
+                Item item = (Item) value;
+                JLabel label = (JLabel) super.getListCellRendererComponent(list, item.file.getName(), index,
+                        selected, focused);
+                label.setIcon(item.icon);
+                label.setToolTipText(item.icon == null ? item.status : item.file.getAbsolutePath());
+                label.setHorizontalAlignment(SwingConstants.CENTER);
+                label.setHorizontalTextPosition(SwingConstants.CENTER);
+                label.setVerticalTextPosition(SwingConstants.BOTTOM);
+                return label;
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelected();
+                }
+            }
+        });
+        add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(openButton);
+        JButton closeButton = new JButton("Close");
+        buttons.add(closeButton);
+        add(buttons, BorderLayout.SOUTH);
+
+        folderButton.addActionListener(e -> chooseFolder());
+        openButton.addActionListener(e -> openSelected());
+        closeButton.addActionListener(e -> setVisible(false));
+
+        setSize(900, 650);
+        setLocationRelativeTo(owner);
+    }
+
+    public void addFolderListener(Consumer<File> listener) {
+        this.folderListener = listener;
+    }
+
+    public void addOpenListener(Consumer<File> listener) {
+        this.openListener = listener;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    public void chooseFolder() {
+        JFileChooser chooser = new JFileChooser(folder);
+        chooser.setDialogTitle("Choose Folder");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION && folderListener != null) {
+            folderListener.accept(chooser.getSelectedFile());
+        }
+    }
+
+    // Lists files without thumbnails; setThumbnail fills them in.
+    public void showFolder(File folder, List<File> files) {
+        this.folder = folder;
+        folderLabel.setText(folder.getAbsolutePath() + "  (" + files.size() + " BMP files)");
+        items.clear();
+        indexes.clear();
+        for (File file : files) {
+            indexes.put(file, items.size());
+            items.addElement(new Item(file));
+        }
+    }
+
+    public void setThumbnail(File file, BufferedImage thumbnail) {
+        update(file, item -> item.icon = new ImageIcon(thumbnail));
+    }
+
+    public void setThumbnailFailed(File file, String message) {
+        update(file, item -> item.status = message);
+    }
+
+    private void update(File file, Consumer<Item> change) {
+        Integer index = indexes.get(file);
+        if (index != null) {
+            Item item = items.get(index);
+            change.accept(item);
+            items.set(index, item);
+        }
+    }
+
+    private void openSelected() {
+        Item selected = list.getSelectedValue();
+        if (selected != null && openListener != null) {
+            openListener.accept(selected.file);
+        }
+    }
+}
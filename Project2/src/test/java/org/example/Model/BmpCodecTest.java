@@ -0,0 +1,132 @@
+package org.example.Model;
+import org.apache.commons.imaging.Imaging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BmpCodecTest {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 19;
+    private final PixelEngine engine = new PixelEngine(1, PixelEngine.DEFAULT_TILE_HEIGHT);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTrips24Bit() throws Exception {
+        assertRoundTrip(TestImages.random(WIDTH, HEIGHT, 7), 24, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    void roundTrips8BitGray() throws Exception {
+        BufferedImage gray = ImagePipeline.identity().grayscale().execute(TestImages.random(WIDTH, HEIGHT, 8), engine);
+        assertRoundTrip(gray, 8, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    @Test
+    void roundTrips1Bit() throws Exception {
+        BufferedImage binary = ImagePipeline.identity().orderedDither()
+                .execute(TestImages.random(WIDTH, HEIGHT, 9), engine);
+        assertRoundTrip(binary, 1, BufferedImage.TYPE_BYTE_BINARY);
+    }
+
+    @Test
+    void reads32Bit() throws Exception {
+        BufferedImage image = TestImages.random(WIDTH, HEIGHT, 10);
+        int[] expected = TestImages.pixels(image);
+        for (boolean topDown : new boolean[]{false, true}) {
+            ByteBuffer bmp = ByteBuffer.allocate(BmpCodec.FILE_HEADER_SIZE + BmpCodec.INFO_HEADER_SIZE
+                    + WIDTH * HEIGHT * 4).order(ByteOrder.LITTLE_ENDIAN);
+            BmpCodec.writeHeaders(bmp, WIDTH, topDown ? -HEIGHT : HEIGHT, 32, bmp.capacity(), 0);
+            for (int row = 0; row < HEIGHT; row++) {
+                int y = topDown ? row : HEIGHT - 1 - row;
+                for (int x = 0; x < WIDTH; x++) {
+                    // the unused fourth byte must be ignored
+                    bmp.putInt(expected[y * WIDTH + x] | 0x7F000000);
+                }
+            }
+            BufferedImage decoded = BmpCodec.decode(bmp.flip());
+            assertEquals(BufferedImage.TYPE_INT_RGB, decoded.getType());
+            assertArrayEquals(expected, TestImages.pixels(decoded), topDown ? "top-down" : "bottom-up");
+        }
+    }
+
+    @Test
+    void matchesCommonsImaging() throws Exception {
+        File file = directory.resolve("commons.bmp").toFile();
+        BufferedImage image = TestImages.random(WIDTH, HEIGHT, 11);
+        BmpCodec.write(image, file);
+        assertArrayEquals(TestImages.pixels(Imaging.getBufferedImage(file)), TestImages.pixels(BmpCodec.read(file)));
+    }
+
+    @Test
+    void readsPaddedInfoHeader() throws Exception {
+        BufferedImage gray = ImagePipeline.identity().grayscale().execute(TestImages.random(WIDTH, HEIGHT, 12), engine);
+        int[] expected = TestImages.pixels(gray);
+        File plain = directory.resolve("plain.bmp").toFile();
+        BmpCodec.write(gray, plain);
+        // an info header larger than BITMAPV5HEADER, followed by a full 256-color palette
+        byte[] padded = pad(Files.readAllBytes(plain.toPath()), 200 - BmpCodec.INFO_HEADER_SIZE);
+        File file = directory.resolve("padded.bmp").toFile();
+        Files.write(file.toPath(), padded);
+
+        assertArrayEquals(expected, TestImages.pixels(BmpCodec.decode(ByteBuffer.wrap(padded))), "decode");
+        assertArrayEquals(expected, TestImages.pixels(BmpCodec.readThumbnail(file, WIDTH, HEIGHT)), "thumbnail");
+        File streamed = directory.resolve("streamed.bmp").toFile();
+        new StreamingProcessor().process(file, streamed, ImageModel.ImageState.ORIGINAL, ProgressMonitor.NONE);
+        assertArrayEquals(expected, TestImages.pixels(BmpCodec.read(streamed)), "streamed");
+    }
+
+    // Writes the image, then reads it back both as written (bottom-up) and with its rows stored
+    // top-down.
+    private void assertRoundTrip(BufferedImage image, int bitsPerPixel, int type) throws Exception {
+        File file = directory.resolve("image.bmp").toFile();
+        BmpCodec.write(image, file);
+        assertEquals(BmpCodec.encodedSize(image), file.length());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(bitsPerPixel, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getShort(28));
+
+        int[] expected = TestImages.pixels(image);
+        BufferedImage bottomUp = BmpCodec.read(file);
+        assertEquals(type, bottomUp.getType());
+        assertArrayEquals(expected, TestImages.pixels(bottomUp), "bottom-up");
+
+        BufferedImage topDown = BmpCodec.decode(ByteBuffer.wrap(toTopDown(bytes)));
+        assertEquals(type, topDown.getType());
+        assertArrayEquals(expected, TestImages.pixels(topDown), "top-down");
+    }
+
+    private static byte[] toTopDown(byte[] bottomUp) {
+        ByteBuffer header = ByteBuffer.wrap(bottomUp).order(ByteOrder.LITTLE_ENDIAN);
+        int dataOffset = header.getInt(10);
+        int height = header.getInt(22);
+        int stride = BmpCodec.rowStride(header.getInt(18), header.getShort(28));
+        byte[] topDown = bottomUp.clone();
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(bottomUp, dataOffset + row * stride, topDown, dataOffset + (height - 1 - row) * stride,
+                    stride);
+        }
+        ByteBuffer.wrap(topDown).order(ByteOrder.LITTLE_ENDIAN).putInt(22, -height);
+        return topDown;
+    }
+
+    // Inserts extra zero bytes at the end of the info header.
+    private static byte[] pad(byte[] bmp, int extra) {
+        int headerEnd = BmpCodec.FILE_HEADER_SIZE + BmpCodec.INFO_HEADER_SIZE;
+        byte[] padded = new byte[bmp.length + extra];
+        System.arraycopy(bmp, 0, padded, 0, headerEnd);
+        System.arraycopy(bmp, headerEnd, padded, headerEnd + extra, bmp.length - headerEnd);
+        ByteBuffer header = ByteBuffer.wrap(padded).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(2, padded.length);
+        header.putInt(10, header.getInt(10) + extra);
+        header.putInt(14, BmpCodec.INFO_HEADER_SIZE + extra);
+        return padded;
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.Model;
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ErrorDiffusionTest {
+    private static final int WIDTH = 211;
+    private static final int HEIGHT = 97;
+    private final BufferedImage image = TestImages.random(WIDTH, HEIGHT, 5);
+    private final int[] gray = TestImages.baselineGrayscale(image);
+
+    @Test
+    void parallelWavefrontMatchesSequentialReference() {
+        for (ErrorDiffusion method : ErrorDiffusion.values()) {
+            int[] expected = reference(method);
+            for (int parallelism = 1; parallelism <= 8; parallelism++) {
+                for (int tileHeight : new int[]{1, 5, 64}) {
+                    BufferedImage result = ImagePipeline.identity().errorDiffusion(method)
+                            .execute(image, new PixelEngine(parallelism, tileHeight));
+                    assertEquals(BufferedImage.TYPE_BYTE_BINARY, result.getType());
+                    assertArrayEquals(expected, TestImages.pixels(result),
+                            method + " parallelism " + parallelism + " tiles " + tileHeight);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sequentialKernelMatchesReference() {
+        for (ErrorDiffusion method : ErrorDiffusion.values()) {
+            RowKernel kernel = method.sequential(WIDTH);
+            int[] dst = new int[gray.length];
+            for (int y = 0; y < HEIGHT; y++) {
+                kernel.apply(gray, y * WIDTH, dst, y * WIDTH, WIDTH, y);
+            }
+            assertArrayEquals(reference(method), dst, method.toString());
+        }
+    }
+
+    // Textbook error diffusion over the whole frame, error kept per pixel in a separate array.
+    private int[] reference(ErrorDiffusion method) {
+        int[][] error = new int[HEIGHT + method.rowsBelow][WIDTH + 2 * method.reach];
+        int[] out = new int[gray.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int incoming = error[y][x + method.reach];
+                int value = (gray[y * WIDTH + x] & 0xFF) + Math.floorDiv(incoming + method.divisor / 2, method.divisor);
+                int level = value >= 128 ? 255 : 0;
+                out[y * WIDTH + x] = level == 255 ? 0xFFFFFF : 0;
+                for (int t = 0; t < method.weight.length; t++) {
+                    error[y + method.dy[t]][x + method.dx[t] + method.reach] += (value - level) * method.weight[t];
+                }
+            }
+        }
+        return out;
+    }
+}
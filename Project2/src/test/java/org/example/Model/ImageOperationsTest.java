@@ -0,0 +1,82 @@
+package org.example.Model;
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImageOperationsTest {
+    private static final ImageModel.ImageState[] STATES = {ImageModel.ImageState.GRAYSCALE,
+            ImageModel.ImageState.ORDERED_DITHER, ImageModel.ImageState.AUTO_LEVEL};
+    private final BufferedImage image = TestImages.random(157, 93, 13);
+    private final PixelEngine engine = new PixelEngine(2, 16);
+
+    @Test
+    void cropsReusingFullResultsMatchDirectRender() {
+        SplittableRandom random = new SplittableRandom(14);
+        for (DitherMode mode : DitherMode.values()) {
+            ImageOperations operations = new ImageOperations(engine, new DerivedImageCache());
+            ImageDocument document = ImageDocument.open(image, TileHistograms.build(image, engine),
+                    EditHistory.DEFAULT_BUDGET_BYTES);
+            // full-image results first, so the crops below can be sliced from them
+            for (ImageModel.ImageState state : STATES) {
+                operations.render(document, pipeline(state, null, mode), ProgressMonitor.NONE);
+            }
+            for (int i = 0; i < 20; i++) {
+                ImagePipeline.Crop crop = randomCrop(random);
+                for (ImageModel.ImageState state : STATES) {
+                    assertRendersLikeDirect(operations, document, pipeline(state, crop, mode));
+                }
+            }
+        }
+    }
+
+    @Test
+    void cropsDitheredFromCachedGrayscaleKeepThePattern() {
+        ImageOperations operations = new ImageOperations(engine, new DerivedImageCache());
+        ImageDocument document = ImageDocument.open(image, TileHistograms.build(image, engine),
+                EditHistory.DEFAULT_BUDGET_BYTES);
+        // only the grayscale result is cached, so the crop is dithered rather than sliced
+        operations.render(document, pipeline(ImageModel.ImageState.GRAYSCALE, null, DitherMode.ORDERED_8),
+                ProgressMonitor.NONE);
+        ImageModel.ImageState dither = ImageModel.ImageState.ORDERED_DITHER;
+        BufferedImage full = pipeline(dither, null, DitherMode.ORDERED_8).execute(image, engine);
+        ImagePipeline.Crop crop = new ImagePipeline.Crop(5, 3, 71, 40);
+        BufferedImage rendered = operations.render(document, pipeline(dither, crop, DitherMode.ORDERED_8),
+                ProgressMonitor.NONE);
+        assertArrayEquals(TestImages.pixels(full.getSubimage(crop.x(), crop.y(), crop.width(), crop.height())),
+                TestImages.pixels(rendered));
+    }
+
+    @Test
+    void cropsWithoutCachedResultsMatchDirectRender() {
+        SplittableRandom random = new SplittableRandom(15);
+        ImageOperations operations = new ImageOperations(engine, new DerivedImageCache(0));
+        ImageDocument document = ImageDocument.open(image, TileHistograms.build(image, engine),
+                EditHistory.DEFAULT_BUDGET_BYTES);
+        for (int i = 0; i < 20; i++) {
+            ImagePipeline.Crop crop = randomCrop(random);
+            ImagePipeline pipeline = ImagePipeline.identity().crop(crop.x(), crop.y(), crop.width(), crop.height())
+                    .autoLevel(1, 99);
+            assertRendersLikeDirect(operations, document, pipeline);
+        }
+    }
+
+    private void assertRendersLikeDirect(ImageOperations operations, ImageDocument document, ImagePipeline pipeline) {
+        BufferedImage direct = pipeline.execute(image, new PixelEngine(1, PixelEngine.DEFAULT_TILE_HEIGHT));
+        BufferedImage rendered = operations.render(document, pipeline, ProgressMonitor.NONE);
+        assertEquals(direct.getType(), rendered.getType(), pipeline.toString());
+        assertArrayEquals(TestImages.pixels(direct), TestImages.pixels(rendered), pipeline.toString());
+    }
+
+    private static ImagePipeline pipeline(ImageModel.ImageState state, ImagePipeline.Crop crop, DitherMode mode) {
+        return ImagePipeline.forState(state, crop, new ImagePipeline.AutoLevel(0, 100), mode);
+    }
+
+    private ImagePipeline.Crop randomCrop(SplittableRandom random) {
+        int width = random.nextInt(1, image.getWidth() + 1);
+        int height = random.nextInt(1, image.getHeight() + 1);
+        return new ImagePipeline.Crop(random.nextInt(image.getWidth() - width + 1),
+                random.nextInt(image.getHeight() - height + 1), width, height);
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.Model;
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImagePipelineTest {
+    private final BufferedImage image = TestImages.random(101, 67, 3);
+    private final PixelEngine engine = new PixelEngine(1, PixelEngine.DEFAULT_TILE_HEIGHT);
+
+    @Test
+    void fusedStagesMatchBaseline() {
+        BufferedImage gray = ImagePipeline.identity().grayscale().execute(image, engine);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+        assertArrayEquals(TestImages.baselineGrayscale(image), TestImages.pixels(gray));
+
+        BufferedImage dithered = ImagePipeline.identity().orderedDither().execute(image, engine);
+        assertEquals(BufferedImage.TYPE_BYTE_BINARY, dithered.getType());
+        assertArrayEquals(TestImages.baselineDither(image), TestImages.pixels(dithered));
+
+        BufferedImage dull = TestImages.dull(101, 67, 4);
+        assertArrayEquals(TestImages.baselineAutoLevel(dull),
+                TestImages.pixels(ImagePipeline.identity().autoLevel().execute(dull, engine)));
+    }
+
+    @Test
+    void fusedStagesMatchStepByStep() {
+        BufferedImage gray = ImagePipeline.identity().grayscale().execute(image, engine);
+        BufferedImage stepped = engine.map(gray, Kernels.orderedDither());
+        assertArrayEquals(TestImages.pixels(stepped),
+                TestImages.pixels(ImagePipeline.identity().grayscale().orderedDither().execute(image, engine)));
+
+        BufferedImage cropped = image.getSubimage(13, 7, 50, 41);
+        BufferedImage leveled = ImagePipeline.identity().autoLevel().execute(cropped, engine);
+        assertArrayEquals(TestImages.pixels(leveled),
+                TestImages.pixels(ImagePipeline.identity().crop(13, 7, 50, 41).autoLevel().execute(image, engine)));
+        assertArrayEquals(TestImages.baselineAutoLevel(cropped), TestImages.pixels(leveled));
+    }
+
+    @Test
+    void orderedDitherCommutesWithCrops() {
+        for (int size = 2; size <= 16; size *= 2) {
+            ImagePipeline dither = ImagePipeline.identity().orderedDither(size);
+            BufferedImage full = dither.execute(image, engine);
+            for (ImagePipeline.Crop crop : new ImagePipeline.Crop[]{new ImagePipeline.Crop(16, 32, 60, 30),
+                    new ImagePipeline.Crop(5, 9, 61, 31)}) {
+                BufferedImage cropped = ImagePipeline.identity().crop(crop.x(), crop.y(), crop.width(), crop.height())
+                        .orderedDither(size).execute(image, engine);
+                assertTrue(dither.commutesWith(crop));
+                assertArrayEquals(TestImages.pixels(full.getSubimage(crop.x(), crop.y(), crop.width(), crop.height())),
+                        TestImages.pixels(cropped), "size " + size + " " + crop);
+            }
+        }
+    }
+
+    @Test
+    void resultDoesNotDependOnParallelismOrTiles() {
+        ImagePipeline[] pipelines = {
+                ImagePipeline.identity().grayscale(),
+                ImagePipeline.identity().orderedDither(8),
+                ImagePipeline.identity().autoLevel(0.5, 99.5),
+                ImagePipeline.identity().crop(3, 2, 90, 60).grayscale().autoLevel(),
+        };
+        for (ImagePipeline pipeline : pipelines) {
+            int[] expected = TestImages.pixels(pipeline.execute(image, engine));
+            for (int parallelism : new int[]{2, 3, 8}) {
+                for (int tileHeight : new int[]{1, 7, 64}) {
+                    BufferedImage result = pipeline.execute(image, new PixelEngine(parallelism, tileHeight));
+                    assertArrayEquals(expected, TestImages.pixels(result),
+                            pipeline + " parallelism " + parallelism + " tiles " + tileHeight);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.Model;
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class KernelsTest {
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 23;
+    private final BufferedImage image = TestImages.random(WIDTH, HEIGHT, 1);
+    private final int[] source = TestImages.pixels(image);
+
+    @Test
+    void scalarGrayscaleMatchesBaseline() {
+        assertArrayEquals(TestImages.baselineGrayscale(image), apply(Kernels.scalarGrayscale(), source));
+    }
+
+    @Test
+    void grayscaleMatchesBaseline() {
+        assertArrayEquals(TestImages.baselineGrayscale(image), apply(Kernels.grayscale(), source));
+    }
+
+    @Test
+    void orderedDitherMatchesBaseline() {
+        int[] gray = apply(Kernels.scalarGrayscale(), source);
+        assertArrayEquals(TestImages.baselineDither(image), apply(Kernels.scalarOrderedDither(0, 0), gray));
+        assertArrayEquals(TestImages.baselineDither(image), apply(Kernels.orderedDither(), gray));
+    }
+
+    @Test
+    void autoLevelMatchesBaseline() {
+        BufferedImage dull = TestImages.dull(WIDTH, HEIGHT, 2);
+        ImageHistogram histogram = new ImageHistogram();
+        int[] pixels = TestImages.pixels(dull);
+        for (int y = 0; y < HEIGHT; y++) {
+            histogram.visit(pixels, y * WIDTH, WIDTH, y);
+        }
+        assertArrayEquals(TestImages.baselineAutoLevel(dull),
+                apply(Kernels.autoLevel(histogram.min(), histogram.max()), pixels));
+    }
+
+    @Test
+    void bayerMatricesArePermutations() {
+        for (int size = 2; size <= 16; size *= 2) {
+            int[] values = Arrays.stream(Kernels.bayerMatrix(size)).flatMapToInt(Arrays::stream).sorted().toArray();
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(i, values[i], "size " + size);
+            }
+        }
+        assertArrayEquals(TestImages.BAYER_4, Kernels.bayerMatrix(4));
+        assertFalse(Kernels.isDitherSize(32));
+    }
+
+    @Test
+    void simdKernelsMatchScalar() {
+        SimdKernels simd = Kernels.simd();
+        assumeTrue(simd != null, "SIMD kernels not built (-Pvector) or jdk.incubator.vector not resolved");
+        assertArrayEquals(apply(Kernels.scalarGrayscale(), source), apply(simd.grayscale(), source));
+        int[] gray = apply(Kernels.scalarGrayscale(), source);
+        for (int size = 2; size <= 16; size *= 2) {
+            if (!simd.supportsMatrixSize(size)) {
+                continue;
+            }
+            int[][] matrix = Kernels.bayerMatrix(size);
+            for (int phase = 0; phase < size; phase += 3) {
+                // Kernels.orderedDither would pick the SIMD kernel too, so compare with the
+                // scalar formula directly.
+                assertArrayEquals(scalarDither(gray, matrix, phase, phase + 1),
+                        apply(simd.orderedDither(matrix, phase, phase + 1), gray), "size " + size);
+            }
+        }
+    }
+
+    private static int[] scalarDither(int[] gray, int[][] matrix, int phaseX, int phaseY) {
+        int size = matrix.length;
+        int[] dst = new int[gray.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int scaledInput = (gray[y * WIDTH + x] >> 16 & 0xFF) * size * size / 256;
+                dst[y * WIDTH + x] = scaledInput > matrix[(x + phaseX) % size][(y + phaseY) % size] ? 0xFFFFFF : 0;
+            }
+        }
+        return dst;
+    }
+
+    private static int[] apply(RowKernel kernel, int[] src) {
+        int[] dst = new int[src.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            kernel.apply(src, y * WIDTH, dst, y * WIDTH, WIDTH, y);
+        }
+        return dst;
+    }
+}
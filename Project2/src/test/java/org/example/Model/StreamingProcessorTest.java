@@ -0,0 +1,53 @@
+package org.example.Model;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class StreamingProcessorTest {
+    private final PixelEngine engine = new PixelEngine(3, 5);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesInMemoryResult() throws Exception {
+        BufferedImage image = TestImages.dull(83, 41, 12);
+        File input = directory.resolve("input.bmp").toFile();
+        BmpCodec.write(image, input);
+        for (ImageModel.ImageState state : new ImageModel.ImageState[]{ImageModel.ImageState.ORIGINAL,
+                ImageModel.ImageState.GRAYSCALE, ImageModel.ImageState.AUTO_LEVEL}) {
+            assertStreamed(image, input, state, DitherMode.ORDERED_4);
+        }
+        for (DitherMode mode : DitherMode.values()) {
+            assertStreamed(image, input, ImageModel.ImageState.ORDERED_DITHER, mode);
+        }
+    }
+
+    @Test
+    void replacesItsOwnInput() throws Exception {
+        BufferedImage image = TestImages.random(83, 41, 13);
+        File file = directory.resolve("in-place.bmp").toFile();
+        BmpCodec.write(image, file);
+        new StreamingProcessor(7).process(file, file, ImageModel.ImageState.GRAYSCALE, ProgressMonitor.NONE);
+        assertArrayEquals(TestImages.baselineGrayscale(image), TestImages.pixels(BmpCodec.read(file)));
+        assertFalse(directory.resolve("in-place.bmp.part").toFile().exists());
+    }
+
+    private void assertStreamed(BufferedImage image, File input, ImageModel.ImageState state, DitherMode mode)
+            throws Exception {
+        File output = directory.resolve(state + "-" + mode.name() + ".bmp").toFile();
+        // bands much smaller than the image, so rows cross band boundaries
+        new StreamingProcessor(7).process(input, output, state, mode, ProgressMonitor.NONE);
+        BufferedImage expected = ImagePipeline.forState(state, null, new ImagePipeline.AutoLevel(0, 100), mode)
+                .execute(image, engine);
+        BufferedImage streamed = BmpCodec.read(output);
+        String name = state + " " + mode;
+        assertEquals(BmpCodec.bitsPerPixel(expected), BmpCodec.bitsPerPixel(streamed), name);
+        assertArrayEquals(TestImages.pixels(expected), TestImages.pixels(streamed), name);
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.Model;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+
+// Synthetic inputs and the per-pixel getRGB/Color implementations the row kernels replaced, which
+// serve as the reference outputs.
+final class TestImages {
+    static final int[][] BAYER_4 = {
+            {0, 8, 2, 10},
+            {12, 4, 14, 6},
+            {3, 11, 1, 9},
+            {15, 7, 13, 5},
+    };
+
+    private TestImages() {
+    }
+
+    // Noise over a gradient, so every channel value and most dither thresholds are hit. Odd
+    // sizes leave vector tails and padded BMP rows.
+    static BufferedImage random(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = (x + y) * 255 / (width + height);
+                int red = clamp(base + random.nextInt(-60, 61));
+                int green = clamp(base + random.nextInt(-60, 61));
+                int blue = random.nextInt(256);
+                image.setRGB(x, y, red << 16 | green << 8 | blue);
+            }
+        }
+        return image;
+    }
+
+    // Low-contrast input, so auto level has something to stretch.
+    static BufferedImage dull(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(40, 90) << 16 | random.nextInt(100, 200) << 8
+                        | random.nextInt(10, 250));
+            }
+        }
+        return image;
+    }
+
+    // 0x00RRGGBB pixels, reading gray images the way the engine does.
+    static int[] pixels(BufferedImage image) {
+        int width = image.getWidth();
+        int[] pixels = new int[width * image.getHeight()];
+        RowReader reader = RowReader.of(image);
+        for (int y = 0; y < image.getHeight(); y++) {
+            int offset = reader.load(y);
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = reader.data()[offset + x] & 0xFFFFFF;
+            }
+        }
+        return pixels;
+    }
+
+    static int[] baselineGrayscale(BufferedImage image) {
+        int width = image.getWidth();
+        int[] gray = new int[width * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                Color c = new Color(image.getRGB(x, y));
+                int value = (int) (c.getRed() * 0.299) + (int) (c.getGreen() * 0.587) + (int) (c.getBlue() * 0.114);
+                gray[y * width + x] = new Color(value, value, value).getRGB() & 0xFFFFFF;
+            }
+        }
+        return gray;
+    }
+
+    static int[] baselineDither(BufferedImage image) {
+        int width = image.getWidth();
+        int[] gray = baselineGrayscale(image);
+        int[] dithered = new int[gray.length];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                int scaledInput = (gray[y * width + x] >> 16) * 16 / 256;
+                dithered[y * width + x] = scaledInput > BAYER_4[x % 4][y % 4] ? 0xFFFFFF : 0;
+            }
+        }
+        return dithered;
+    }
+
+    static int[] baselineAutoLevel(BufferedImage image) {
+        int width = image.getWidth();
+        int[] min = {255, 255, 255};
+        int[] max = {0, 0, 0};
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                int[] rgb = channels(image.getRGB(x, y));
+                for (int c = 0; c < 3; c++) {
+                    min[c] = Math.min(min[c], rgb[c]);
+                    max[c] = Math.max(max[c], rgb[c]);
+                }
+            }
+        }
+        int[] leveled = new int[width * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                int[] rgb = channels(image.getRGB(x, y));
+                for (int c = 0; c < 3; c++) {
+                    rgb[c] = max[c] == min[c] ? rgb[c]
+                            : Math.min(255, Math.max(0, (rgb[c] - min[c]) * 255 / (max[c] - min[c])));
+                }
+                leveled[y * width + x] = rgb[0] << 16 | rgb[1] << 8 | rgb[2];
+            }
+        }
+        return leveled;
+    }
+
+    private static int[] channels(int rgb) {
+        return new int[]{(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF};
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.Model;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SimdKernels on jdk.incubator.vector. Kernels.simd() only loads this class once it has confirmed
+// that the module is in the boot layer; it is enabled with --add-modules jdk.incubator.vector.
+public final class VectorKernels implements SimdKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // 16-bit fixed-point luma weights. Each term is truncated on its own, like the scalar
+    // (int) (value * weight) casts, and for every 8-bit value floor(value * W / 65536) equals
+    // (int) (value * weight), so the output matches the scalar kernel exactly.
+    private static final int RED_WEIGHT = 19596;   // 0.299
+    private static final int GREEN_WEIGHT = 38470; // 0.587
+    private static final int BLUE_WEIGHT = 7472;   // 0.114
+
+    public VectorKernels() {
+    }
+
+    @Override
+    public RowKernel grayscale() {
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            int x = 0;
+            int bound = SPECIES.loopBound(width);
+            for (; x < bound; x += SPECIES.length()) {
+                IntVector rgb = IntVector.fromArray(SPECIES, src, srcOffset + x);
+                IntVector red = rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+                        .mul(RED_WEIGHT).lanewise(VectorOperators.LSHR, 16);
+                IntVector green = rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF)
+                        .mul(GREEN_WEIGHT).lanewise(VectorOperators.LSHR, 16);
+                IntVector blue = rgb.and(0xFF)
+                        .mul(BLUE_WEIGHT).lanewise(VectorOperators.LSHR, 16);
+                IntVector gray = red.add(green).add(blue);
+                gray.lanewise(VectorOperators.LSHL, 16)
+                        .or(gray.lanewise(VectorOperators.LSHL, 8))
+                        .or(gray)
+                        .intoArray(dst, dstOffset + x);
+            }
+            for (; x < width; x++) {
+                int rgb = src[srcOffset + x];
+                int gray = ((((rgb >> 16) & 0xFF) * RED_WEIGHT) >>> 16)
+                        + ((((rgb >> 8) & 0xFF) * GREEN_WEIGHT) >>> 16)
+                        + (((rgb & 0xFF) * BLUE_WEIGHT) >>> 16);
+                dst[dstOffset + x] = gray << 16 | gray << 8 | gray;
+            }
+        };
+    }
+
+    // Vector lanes cover whole matrix periods, so a row's thresholds form one constant vector.
+    @Override
+    public boolean supportsMatrixSize(int matrixSize) {
+        return SPECIES.length() % matrixSize == 0;
+    }
+
+    @Override
+    public RowKernel orderedDither(int[][] matrix, int phaseX, int phaseY) {
+        int matrixSize = matrix.length;
+        int levels = matrixSize * matrixSize;
+        int lanes = SPECIES.length();
+        IntVector[] rowThresholds = new IntVector[matrixSize];
+        for (int j = 0; j < matrixSize; j++) {
+            int[] thresholds = new int[lanes];
+            for (int lane = 0; lane < lanes; lane++) {
+                thresholds[lane] = matrix[(lane + phaseX) % matrixSize][j];
+            }
+            rowThresholds[j] = IntVector.fromArray(SPECIES, thresholds, 0);
+        }
+        IntVector black = IntVector.zero(SPECIES);
+        IntVector white = IntVector.broadcast(SPECIES, 0xFFFFFF);
+        return (src, srcOffset, dst, dstOffset, width, y) -> {
+            int j = (y + phaseY) % matrixSize;
+            IntVector threshold = rowThresholds[j];
+            int x = 0;
+            int bound = SPECIES.loopBound(width);
+            for (; x < bound; x += lanes) {
+                IntVector scaled = IntVector.fromArray(SPECIES, src, srcOffset + x)
+                        .lanewise(VectorOperators.LSHR, 16).and(0xFF)
+                        .mul(levels).lanewise(VectorOperators.LSHR, 8);
+                VectorMask<Integer> on = scaled.compare(VectorOperators.GT, threshold);
+                black.blend(white, on).intoArray(dst, dstOffset + x);
+            }
+            for (; x < width; x++) {
+                int scaledInput = ((src[srcOffset + x] >> 16) & 0xFF) * levels / 256;
+                dst[dstOffset + x] = scaledInput > matrix[(x + phaseX) % matrixSize][j] ? 0xFFFFFF : 0;
+            }
+        };
+    }
+}